@@ -0,0 +1,84 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.forge.scaffold.spring;
+
+import java.util.Locale;
+
+/**
+ * How a generated search page counts the entities matching its search.
+ * <p>
+ * The strategy is chosen per entity when it is scaffolded. The generated DAO's <code>getCount</code> implements it, and
+ * the generated controller and search page decide from it whether to fetch an extra entity to detect the next page.
+ */
+
+public enum CountStrategy
+{
+    /**
+     * Run a <code>COUNT(*)</code> with the search's predicates on every request.
+     */
+
+    EXACT,
+
+    /**
+     * Never count. Fetch one entity more than a page, to tell whether there is a next page.
+     */
+
+    NONE,
+
+    /**
+     * Run an exact count, but reuse the unfiltered count until it is older than the configured time-to-live.
+     */
+
+    CACHED,
+
+    /**
+     * Estimate the unfiltered count from the database's statistics, and fetch one entity more than a page to tell
+     * whether there is a next page. Filtered searches are counted exactly.
+     */
+
+    ESTIMATED;
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Whether the generated controller fetches one entity more than a page to detect the next page, rather than
+     * trusting the count.
+     */
+
+    public boolean isDetectingNextPage()
+    {
+        return this == NONE || this == ESTIMATED;
+    }
+
+    /**
+     * Parses the given strategy name, ignoring case.
+     *
+     * @throws IllegalArgumentException if the name is not a strategy
+     */
+
+    public static CountStrategy forName(String name)
+    {
+        return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+    }
+}
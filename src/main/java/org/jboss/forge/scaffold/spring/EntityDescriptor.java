@@ -0,0 +1,220 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.forge.scaffold.spring;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jvnet.inflector.Noun;
+import org.metawidget.util.simple.StringUtils;
+
+/**
+ * Every name derived from an entity's simple name (its plural, labels, controller path, DAO names and so on), computed
+ * once.
+ * <p>
+ * Deriving names is pure, but the Inflector's pluralization rules are a long list of regular expressions, and the same
+ * names are derived for every template and every widget. So descriptors (and any other pluralizations) are memoized
+ * for the life of the process. Descriptors are immutable, and are put into the template context as
+ * <code>entityDescriptor</code>.
+ */
+
+public class EntityDescriptor
+{
+    //
+    // Private statics
+    //
+
+    private static final Map<String, EntityDescriptor> DESCRIPTORS = new ConcurrentHashMap<String, EntityDescriptor>();
+
+    private static final Map<String, String> PLURALS = new ConcurrentHashMap<String, String>();
+
+    //
+    // Private members
+    //
+
+    private final String name;
+
+    private final String ccName;
+
+    private final String camelCaseName;
+
+    private final String label;
+
+    private final String plural;
+
+    private final String pluralLabel;
+
+    private final String controllerPath;
+
+    //
+    // Constructor
+    //
+
+    private EntityDescriptor(String name)
+    {
+        this.name = name;
+        this.ccName = StringUtils.decapitalize(name);
+        this.camelCaseName = StringUtils.camelCase(name);
+        this.label = StringUtils.uncamelCase(name);
+        this.plural = pluralOf(name);
+        this.pluralLabel = pluralOf(this.label);
+        this.controllerPath = this.plural.toLowerCase();
+    }
+
+    //
+    // Public statics
+    //
+
+    /**
+     * Returns the descriptor for the given entity name. Any package is ignored.
+     */
+
+    public static EntityDescriptor forName(String name)
+    {
+        String simpleName = name.substring(name.lastIndexOf(StringUtils.SEPARATOR_DOT_CHAR) + 1);
+        EntityDescriptor descriptor = DESCRIPTORS.get(simpleName);
+
+        if (descriptor == null)
+        {
+            descriptor = new EntityDescriptor(simpleName);
+            DESCRIPTORS.put(simpleName, descriptor);
+        }
+
+        return descriptor;
+    }
+
+    /**
+     * Memoized <code>Noun.pluralOf</code>, for words that are not entity names (such as property names).
+     */
+
+    public static String pluralOf(String word)
+    {
+        String plural = PLURALS.get(word);
+
+        if (plural == null)
+        {
+            plural = Noun.pluralOf(word);
+            PLURALS.put(word, plural);
+        }
+
+        return plural;
+    }
+
+    //
+    // Public methods
+    //
+
+    /**
+     * The simple name, such as <code>CustomerOrder</code>.
+     */
+
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * The decapitalized name, such as <code>customerOrder</code>. Used for model attributes and variables.
+     */
+
+    public String getCcName()
+    {
+        return this.ccName;
+    }
+
+    /**
+     * The name as given by <code>StringUtils.camelCase</code>. Used for DAO fields.
+     */
+
+    public String getCamelCaseName()
+    {
+        return this.camelCaseName;
+    }
+
+    /**
+     * The human-readable name, such as <code>Customer Order</code>.
+     */
+
+    public String getLabel()
+    {
+        return this.label;
+    }
+
+    /**
+     * The plural name, such as <code>CustomerOrders</code>.
+     */
+
+    public String getPlural()
+    {
+        return this.plural;
+    }
+
+    /**
+     * The human-readable plural, such as <code>Customer Orders</code>.
+     */
+
+    public String getPluralLabel()
+    {
+        return this.pluralLabel;
+    }
+
+    /**
+     * The path of the entity's controller, relative to its target directory, such as <code>customerorders</code>.
+     */
+
+    public String getControllerPath()
+    {
+        return this.controllerPath;
+    }
+
+    public String getControllerName()
+    {
+        return this.name + "Controller";
+    }
+
+    public String getDaoName()
+    {
+        return this.name + "Dao";
+    }
+
+    public String getDaoImplementationName()
+    {
+        return this.name + "DaoImpl";
+    }
+
+    /**
+     * The name of a field holding the entity's DAO, such as <code>customerOrderDao</code>.
+     */
+
+    public String getDaoFieldName()
+    {
+        return this.camelCaseName + "Dao";
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.name;
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.forge.scaffold.spring;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.Id;
+import javax.persistence.ManyToMany;
+import javax.persistence.ManyToOne;
+import javax.persistence.OneToMany;
+import javax.persistence.OneToOne;
+
+import org.jboss.forge.parser.java.Annotation;
+import org.jboss.forge.parser.java.Field;
+import org.jboss.forge.parser.java.JavaClass;
+import org.jboss.forge.parser.java.Method;
+import org.jboss.forge.parser.java.Type;
+import org.jboss.forge.project.Project;
+import org.metawidget.util.CollectionUtils;
+import org.metawidget.util.simple.StringUtils;
+
+/**
+ * The entities of a project, with their primary keys and relationships, analysed once per entity source.
+ * <p>
+ * Relationship targets are resolved through the entity's imports and package (rather than by slicing field
+ * initializers), so a relationship's target is known even when it has no initializer, or is in the entity's own
+ * package. The graph lives on the project and is shared between threads. Entities are analysed again whenever a
+ * different <code>JavaClass</code> instance (that is, a fresh parse of the source) is given for them.
+ */
+
+public class EntityGraph
+{
+    //
+    // Private statics
+    //
+
+    private static final String PROJECT_ATTRIBUTE = EntityGraph.class.getName();
+
+    //
+    // Private members
+    //
+
+    private final Map<String, EntityNode> nodes = new ConcurrentHashMap<String, EntityNode>();
+
+    //
+    // Public statics
+    //
+
+    /**
+     * Returns the graph for the given project, creating it if necessary.
+     */
+
+    public static EntityGraph forProject(Project project)
+    {
+        synchronized (project)
+        {
+            EntityGraph graph = (EntityGraph) project.getAttribute(PROJECT_ATTRIBUTE);
+
+            if (graph == null)
+            {
+                graph = new EntityGraph();
+                project.setAttribute(PROJECT_ATTRIBUTE, graph);
+            }
+
+            return graph;
+        }
+    }
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Analyses, in one pass, those of the given entities that are new or have been parsed again.
+     */
+
+    public void update(Collection<JavaClass> entities)
+    {
+        for (JavaClass entity : entities)
+        {
+            getNode(entity);
+        }
+    }
+
+    /**
+     * Returns the node of the given entity, analysing it if it is new or has been parsed again.
+     */
+
+    public EntityNode getNode(JavaClass entity)
+    {
+        EntityNode node = this.nodes.get(entity.getQualifiedName());
+
+        if (node == null || node.source != entity)
+        {
+            node = new EntityNode(entity);
+            this.nodes.put(entity.getQualifiedName(), node);
+        }
+
+        return node;
+    }
+
+    /**
+     * Returns the node of the given entity, or null if it has not been analysed.
+     */
+
+    public EntityNode getNode(String qualifiedName)
+    {
+        return this.nodes.get(qualifiedName);
+    }
+
+    public Collection<EntityNode> getNodes()
+    {
+        return Collections.unmodifiableCollection(this.nodes.values());
+    }
+
+    /**
+     * Returns the converters needed by the N-to-many relationships of the given entities: the simple name of each
+     * target entity, mapped to its qualified name.
+     */
+
+    public Map<String, String> getConverters(Collection<JavaClass> entities)
+    {
+        Map<String, String> converters = CollectionUtils.newLinkedHashMap();
+
+        for (JavaClass entity : entities)
+        {
+            converters.putAll(getNode(entity).getConverters());
+        }
+
+        return converters;
+    }
+
+    public void clear()
+    {
+        this.nodes.clear();
+    }
+
+    //
+    // Inner classes
+    //
+
+    public enum RelationshipKind
+    {
+        ONE_TO_ONE, ONE_TO_MANY, MANY_TO_ONE, MANY_TO_MANY;
+
+        public boolean isToMany()
+        {
+            return this == ONE_TO_MANY || this == MANY_TO_MANY;
+        }
+    }
+
+    /**
+     * A single relationship field of an entity.
+     */
+
+    public static class Relationship
+    {
+        //
+        // Private members
+        //
+
+        private final String name;
+
+        private final RelationshipKind kind;
+
+        private final String targetType;
+
+        private final String targetPackage;
+
+        private final String mappedBy;
+
+        //
+        // Constructor
+        //
+
+        Relationship(String name, RelationshipKind kind, String targetType, String targetPackage, String mappedBy)
+        {
+            this.name = name;
+            this.kind = kind;
+            this.targetType = targetType;
+            this.targetPackage = targetPackage;
+            this.mappedBy = mappedBy;
+        }
+
+        //
+        // Public methods
+        //
+
+        public String getName()
+        {
+            return this.name;
+        }
+
+        public RelationshipKind getKind()
+        {
+            return this.kind;
+        }
+
+        /**
+         * The simple name of the related entity (for N-to-many relationships, the collection's element type).
+         */
+
+        public String getTargetType()
+        {
+            return this.targetType;
+        }
+
+        /**
+         * The package of the related entity, or null if it could not be resolved.
+         */
+
+        public String getTargetPackage()
+        {
+            return this.targetPackage;
+        }
+
+        public String getMappedBy()
+        {
+            return this.mappedBy;
+        }
+
+        /**
+         * Whether this side of the relationship owns it (that is, has no <code>mappedBy</code>).
+         */
+
+        public boolean isOwningSide()
+        {
+            return this.mappedBy == null;
+        }
+    }
+
+    /**
+     * An entity, with its primary key(s) and relationships in declaration order. Immutable once built.
+     */
+
+    public static class EntityNode
+    {
+        //
+        // Private members
+        //
+
+        final JavaClass source;
+
+        private final String qualifiedName;
+
+        private final List<String> primaryKeys;
+
+        private final List<Relationship> relationships;
+
+        //
+        // Constructor
+        //
+
+        EntityNode(JavaClass entity)
+        {
+            this.source = entity;
+            this.qualifiedName = entity.getQualifiedName();
+
+            List<String> primaryKeys = CollectionUtils.newArrayList();
+            List<Relationship> relationships = CollectionUtils.newArrayList();
+
+            for (Field<?> field : entity.getFields())
+            {
+                if (field.hasAnnotation(Id.class))
+                {
+                    primaryKeys.add(field.getName());
+                }
+
+                Relationship relationship = analyseRelationship(entity, field);
+
+                if (relationship != null)
+                {
+                    relationships.add(relationship);
+                }
+            }
+
+            // Primary keys may also be declared on getters
+
+            for (Method<?> method : entity.getMethods())
+            {
+                String name = method.getName();
+
+                if (method.hasAnnotation(Id.class) && name.startsWith("get") && name.length() > 3)
+                {
+                    String property = StringUtils.decapitalize(name.substring(3));
+
+                    if (!primaryKeys.contains(property))
+                    {
+                        primaryKeys.add(property);
+                    }
+                }
+            }
+
+            this.primaryKeys = Collections.unmodifiableList(primaryKeys);
+            this.relationships = Collections.unmodifiableList(relationships);
+        }
+
+        //
+        // Public methods
+        //
+
+        public String getQualifiedName()
+        {
+            return this.qualifiedName;
+        }
+
+        public List<String> getPrimaryKeys()
+        {
+            return this.primaryKeys;
+        }
+
+        public List<Relationship> getRelationships()
+        {
+            return this.relationships;
+        }
+
+        /**
+         * Returns the converters needed by this entity's N-to-many relationships: the simple name of each target
+         * entity, mapped to its qualified name.
+         */
+
+        public Map<String, String> getConverters()
+        {
+            Map<String, String> converters = CollectionUtils.newLinkedHashMap();
+
+            for (Relationship relationship : this.relationships)
+            {
+                if (relationship.getKind().isToMany())
+                {
+                    String targetPackage = relationship.getTargetPackage();
+                    String targetType = relationship.getTargetType();
+
+                    converters.put(targetType, (targetPackage == null) ? targetType : targetPackage + "." + targetType);
+                }
+            }
+
+            return converters;
+        }
+
+        //
+        // Private methods
+        //
+
+        private static Relationship analyseRelationship(JavaClass entity, Field<?> field)
+        {
+            Annotation<?> annotation;
+            RelationshipKind kind;
+
+            if (field.hasAnnotation(OneToOne.class))
+            {
+                annotation = field.getAnnotation(OneToOne.class);
+                kind = RelationshipKind.ONE_TO_ONE;
+            }
+            else if (field.hasAnnotation(OneToMany.class))
+            {
+                annotation = field.getAnnotation(OneToMany.class);
+                kind = RelationshipKind.ONE_TO_MANY;
+            }
+            else if (field.hasAnnotation(ManyToOne.class))
+            {
+                annotation = field.getAnnotation(ManyToOne.class);
+                kind = RelationshipKind.MANY_TO_ONE;
+            }
+            else if (field.hasAnnotation(ManyToMany.class))
+            {
+                annotation = field.getAnnotation(ManyToMany.class);
+                kind = RelationshipKind.MANY_TO_MANY;
+            }
+            else
+            {
+                return null;
+            }
+
+            String targetType = field.getType();
+
+            if (kind.isToMany())
+            {
+                @SuppressWarnings({ "unchecked", "rawtypes" })
+                List<Type<?>> typeArguments = (List) field.getTypeInspector().getTypeArguments();
+
+                if (!typeArguments.isEmpty())
+                {
+                    targetType = typeArguments.get(0).getQualifiedName();
+                }
+            }
+
+            String qualifiedTarget = entity.resolveType(targetType);
+            int lastDot = qualifiedTarget.lastIndexOf('.');
+            String targetPackage = (lastDot == -1) ? null : qualifiedTarget.substring(0, lastDot);
+            String simpleTarget = qualifiedTarget.substring(lastDot + 1);
+
+            String mappedBy = annotation.getStringValue("mappedBy");
+
+            if (mappedBy != null && mappedBy.length() == 0)
+            {
+                mappedBy = null;
+            }
+
+            return new Relationship(field.getName(), kind, simpleTarget, targetPackage, mappedBy);
+        }
+    }
+}
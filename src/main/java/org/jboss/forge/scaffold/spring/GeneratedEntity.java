@@ -0,0 +1,129 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.forge.scaffold.spring;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.forge.parser.java.JavaClass;
+import org.metawidget.util.CollectionUtils;
+
+/**
+ * The rendered, but not yet written, scaffolding of a single entity.
+ * <p>
+ * Rendering an entity touches no shared files, so it can happen on any thread. The resources collected here are then
+ * written, and the Tiles definitions merged, by the thread that owns the scaffolding run.
+ */
+
+public class GeneratedEntity
+{
+    //
+    // Private members
+    //
+
+    private final JavaClass entity;
+
+    private final Map<String, String> webResources = CollectionUtils.newLinkedHashMap();
+
+    private final Map<String, String> javaSources = CollectionUtils.newLinkedHashMap();
+
+    private final List<String[]> viewDefinitions = CollectionUtils.newArrayList();
+
+    private final Map<String, String> converters = CollectionUtils.newLinkedHashMap();
+
+    //
+    // Constructor
+    //
+
+    public GeneratedEntity(JavaClass entity)
+    {
+        this.entity = entity;
+    }
+
+    //
+    // Public methods
+    //
+
+    public JavaClass getEntity()
+    {
+        return this.entity;
+    }
+
+    /**
+     * Adds a resource, relative to the web root, with the given contents.
+     */
+
+    public void addWebResource(String path, String contents)
+    {
+        this.webResources.put(path, contents);
+    }
+
+    public Map<String, String> getWebResources()
+    {
+        return Collections.unmodifiableMap(this.webResources);
+    }
+
+    /**
+     * Adds a Java source, as rendered, for the given fully-qualified class name. The source is not parsed.
+     */
+
+    public void addJavaSource(String qualifiedName, String contents)
+    {
+        this.javaSources.put(qualifiedName, contents);
+    }
+
+    public Map<String, String> getJavaSources()
+    {
+        return Collections.unmodifiableMap(this.javaSources);
+    }
+
+    /**
+     * Adds an Apache Tiles2 view definition, to be added to views.xml using the run's layout.
+     */
+
+    public void addViewDefinition(String name, String title, String header, String subheader, String body)
+    {
+        this.viewDefinitions.add(new String[] { name, title, header, subheader, body });
+    }
+
+    public List<String[]> getViewDefinitions()
+    {
+        return Collections.unmodifiableList(this.viewDefinitions);
+    }
+
+    /**
+     * Records the converters (entity name to qualified name) required by the entity's N-to-many relationships.
+     */
+
+    public void addConverters(Map<String, String> converters)
+    {
+        this.converters.putAll(converters);
+    }
+
+    public Map<String, String> getConverters()
+    {
+        return Collections.unmodifiableMap(this.converters);
+    }
+}
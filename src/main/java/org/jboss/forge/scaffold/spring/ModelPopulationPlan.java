@@ -0,0 +1,154 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.forge.scaffold.spring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.metawidget.util.CollectionUtils;
+
+/**
+ * Records which of an entity's relationship model attributes each of its generated pages references, so that the
+ * generated controller loads only those a page renders.
+ * <p>
+ * Pages are analysed after rendering, so the plan reflects whatever the Metawidgets actually emitted: a read-only
+ * page rendering its relationships as links needs none of them, whereas an editable page rendering dropdowns needs
+ * each dropdown's items.
+ */
+
+public class ModelPopulationPlan
+{
+    //
+    // Public statics
+    //
+
+    public static final String CREATE = "create";
+
+    public static final String EDIT = "edit";
+
+    public static final String VIEW = "view";
+
+    public static final String SEARCH = "search";
+
+    //
+    // Private members
+    //
+
+    private final List<String> attributes;
+
+    private final Map<String, List<Boolean>> uses = CollectionUtils.newHashMap();
+
+    //
+    // Constructor
+    //
+
+    /**
+     * @param attributes names of the model attributes the controller may populate
+     */
+
+    public ModelPopulationPlan(List<String> attributes)
+    {
+        this.attributes = (attributes == null) ? Collections.<String> emptyList() : attributes;
+    }
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Records which attributes the given rendered page of the given view references.
+     */
+
+    public void record(String view, String page)
+    {
+        List<Boolean> viewUses = new ArrayList<Boolean>(this.attributes.size());
+
+        for (String attribute : this.attributes)
+        {
+            viewUses.add(references(page, attribute));
+        }
+
+        this.uses.put(view, viewUses);
+    }
+
+    /**
+     * Whether the given view references each attribute, in the order the attributes were given. Views that were never
+     * recorded are assumed to reference every attribute.
+     */
+
+    public List<Boolean> getUses(String view)
+    {
+        List<Boolean> viewUses = this.uses.get(view);
+
+        if (viewUses == null)
+        {
+            return Collections.nCopies(this.attributes.size(), Boolean.TRUE);
+        }
+
+        return viewUses;
+    }
+
+    public boolean isUsed(String view, String attribute)
+    {
+        int index = this.attributes.indexOf(attribute);
+
+        if (index == -1)
+        {
+            return false;
+        }
+
+        return getUses(view).get(index);
+    }
+
+    /**
+     * Adds each view's uses to the given template context, as <code>createUses</code>, <code>editUses</code>,
+     * <code>viewUses</code> and <code>searchUses</code>.
+     */
+
+    public Map<Object, Object> addTo(Map<Object, Object> context)
+    {
+        for (String view : new String[] { CREATE, EDIT, VIEW, SEARCH })
+        {
+            context.put(view + "Uses", getUses(view));
+        }
+
+        return context;
+    }
+
+    /**
+     * Whether the given page refers to the given model attribute as the root of an EL expression, such as
+     * <code>${attribute}</code> or <code>${attribute.name}</code> (but not <code>${entity.attribute}</code>).
+     */
+
+    public static boolean references(String page, String attribute)
+    {
+        if (page == null)
+        {
+            return false;
+        }
+
+        return Pattern.compile("\\$\\{\\s*" + Pattern.quote(attribute) + "(?![\\w$])").matcher(page).find();
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.forge.scaffold.spring;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.Properties;
+
+import org.jboss.forge.project.Project;
+import org.jboss.forge.project.facets.JavaSourceFacet;
+import org.jboss.forge.resources.DirectoryResource;
+import org.jboss.forge.resources.FileResource;
+import org.jboss.forge.scaffold.spring.metawidget.inspector.InspectionResultCache;
+import org.jboss.forge.scaffold.spring.metawidget.inspector.propertystyle.JavaSourceCache;
+import org.jboss.forge.shell.util.Streams;
+import org.metawidget.util.CollectionUtils;
+
+/**
+ * Keeps a project's inspection results warm between scaffolding runs, and between Forge sessions, in resident mode.
+ * <p>
+ * Inspection results are only as valid as the sources they were inspected from. This class records the last-modified
+ * time and length of every source looked up through the <code>JavaSourceCache</code> while the results were computed,
+ * and discards all results as soon as any of those sources changes. Between runs, the results and their sources are
+ * snapshotted to <code>.forge/spring-scaffold.cache</code> under the project root, so that a new Forge session starts
+ * warm. A snapshot written by different templates or Metawidget configs is ignored.
+ */
+
+public class ResidentScaffoldCache
+{
+    //
+    // Public statics
+    //
+
+    public static final String CACHE_FILE = "spring-scaffold.cache";
+
+    //
+    // Private statics
+    //
+
+    private static final String PROJECT_ATTRIBUTE = ResidentScaffoldCache.class.getName();
+
+    private static final String GENERATOR_KEY = "generator";
+
+    private static final String STAMP_PREFIX = "stamp.";
+
+    private static final String RESULT_PREFIX = "result.";
+
+    //
+    // Private members
+    //
+
+    private final Project project;
+
+    /**
+     * Last-modified time and length of each source the cached results depend on, keyed by type.
+     */
+
+    private final Map<String, long[]> stamps = CollectionUtils.newHashMap();
+
+    private boolean loaded;
+
+    //
+    // Constructor
+    //
+
+    private ResidentScaffoldCache(Project project)
+    {
+        this.project = project;
+    }
+
+    //
+    // Public statics
+    //
+
+    /**
+     * Returns the resident cache for the given project, creating it if necessary.
+     */
+
+    public static ResidentScaffoldCache forProject(Project project)
+    {
+        synchronized (project)
+        {
+            ResidentScaffoldCache cache = (ResidentScaffoldCache) project.getAttribute(PROJECT_ATTRIBUTE);
+
+            if (cache == null)
+            {
+                cache = new ResidentScaffoldCache(project);
+                project.setAttribute(PROJECT_ATTRIBUTE, cache);
+            }
+
+            return cache;
+        }
+    }
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Readies the given results for a run. The first time, loads the snapshot (if any). Then discards every result if
+     * any source they depend on has changed since.
+     */
+
+    public synchronized void validate(InspectionResultCache results, String generatorDigest)
+    {
+        if (!this.loaded)
+        {
+            this.loaded = true;
+
+            if (results.isEmpty())
+            {
+                load(results, generatorDigest);
+            }
+        }
+
+        for (Map.Entry<String, long[]> entry : this.stamps.entrySet())
+        {
+            if (!isUnchanged(entry.getKey(), entry.getValue()))
+            {
+                results.clear();
+                this.stamps.clear();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Records the sources looked up during the run just finished, and snapshots the results to disk.
+     */
+
+    public synchronized void save(InspectionResultCache results, JavaSourceCache sources, String generatorDigest)
+    {
+        // A source that changed during the run may have been inspected in two different states, so trust nothing
+
+        for (Map.Entry<String, long[]> entry : sources.getFileStamps().entrySet())
+        {
+            long[] existing = this.stamps.put(entry.getKey(), entry.getValue());
+
+            if (existing != null && (existing[0] != entry.getValue()[0] || existing[1] != entry.getValue()[1]))
+            {
+                results.clear();
+                this.stamps.clear();
+                break;
+            }
+        }
+
+        Properties snapshot = new Properties();
+        snapshot.setProperty(GENERATOR_KEY, generatorDigest);
+
+        for (Map.Entry<String, long[]> entry : this.stamps.entrySet())
+        {
+            snapshot.setProperty(STAMP_PREFIX + entry.getKey(), entry.getValue()[0] + "," + entry.getValue()[1]);
+        }
+
+        for (Map.Entry<String, String> entry : results.getResults().entrySet())
+        {
+            snapshot.setProperty(RESULT_PREFIX + entry.getKey(), entry.getValue());
+        }
+
+        try
+        {
+            StringWriter writer = new StringWriter();
+            snapshot.store(writer, "Spring scaffold inspection results. Safe to delete.");
+            getCacheResource().setContents(writer.toString());
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Unable to write the Spring scaffold cache", e);
+        }
+    }
+
+    /**
+     * Discards every result, both in memory and on disk.
+     */
+
+    public synchronized void clear(InspectionResultCache results)
+    {
+        results.clear();
+        this.stamps.clear();
+
+        FileResource<?> resource = getCacheResource();
+
+        if (resource.exists())
+        {
+            resource.delete();
+        }
+    }
+
+    //
+    // Private methods
+    //
+
+    private void load(InspectionResultCache results, String generatorDigest)
+    {
+        FileResource<?> resource = getCacheResource();
+
+        if (!resource.exists())
+        {
+            return;
+        }
+
+        Properties snapshot = new Properties();
+        InputStream in = resource.getResourceInputStream();
+
+        try
+        {
+            snapshot.load(in);
+        }
+        catch (IOException e)
+        {
+            // A corrupt snapshot just means starting cold
+
+            return;
+        }
+        finally
+        {
+            Streams.closeQuietly(in);
+        }
+
+        if (!generatorDigest.equals(snapshot.getProperty(GENERATOR_KEY)))
+        {
+            return;
+        }
+
+        Map<String, String> loaded = CollectionUtils.newHashMap();
+
+        for (String key : snapshot.stringPropertyNames())
+        {
+            String value = snapshot.getProperty(key);
+
+            if (key.startsWith(STAMP_PREFIX))
+            {
+                String[] stamp = value.split(",");
+
+                if (stamp.length != 2)
+                {
+                    this.stamps.clear();
+                    return;
+                }
+
+                try
+                {
+                    this.stamps.put(key.substring(STAMP_PREFIX.length()),
+                            new long[] { Long.parseLong(stamp[0]), Long.parseLong(stamp[1]) });
+                }
+                catch (NumberFormatException e)
+                {
+                    this.stamps.clear();
+                    return;
+                }
+            }
+            else if (key.startsWith(RESULT_PREFIX))
+            {
+                loaded.put(key.substring(RESULT_PREFIX.length()), value);
+            }
+        }
+
+        results.putResults(loaded);
+    }
+
+    private boolean isUnchanged(String type, long[] stamp)
+    {
+        JavaSourceFacet java = this.project.getFacet(JavaSourceFacet.class);
+        File file;
+
+        try
+        {
+            file = java.getJavaResource(type).getUnderlyingResourceObject();
+        }
+        catch (FileNotFoundException e)
+        {
+            return false;
+        }
+
+        return file.lastModified() == stamp[0] && file.length() == stamp[1];
+    }
+
+    private FileResource<?> getCacheResource()
+    {
+        DirectoryResource directory = this.project.getProjectRoot().getChildDirectory(ScaffoldManifest.MANIFEST_DIRECTORY);
+        return (FileResource<?>) directory.getChild(CACHE_FILE);
+    }
+}
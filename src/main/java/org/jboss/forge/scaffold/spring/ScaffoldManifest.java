@@ -0,0 +1,284 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.forge.scaffold.spring;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.jboss.forge.parser.java.Field;
+import org.jboss.forge.parser.java.JavaClass;
+import org.jboss.forge.parser.java.Type;
+import org.jboss.forge.project.Project;
+import org.jboss.forge.project.facets.JavaSourceFacet;
+import org.jboss.forge.resources.DirectoryResource;
+import org.jboss.forge.resources.FileResource;
+import org.jboss.forge.resources.java.JavaResource;
+import org.jboss.forge.shell.util.Streams;
+import org.metawidget.util.CollectionUtils;
+
+/**
+ * Records a digest of everything that went into scaffolding each entity, so that unchanged entities can be skipped
+ * when the scaffolding is regenerated.
+ * <p>
+ * An entity's digest covers its own source, the sources of every project type its fields refer to (related entities,
+ * embedded types, enums), the target directory and the digest of the scaffold's templates and Metawidget configs. The
+ * manifest is stored as a properties file at <code>.forge/spring-scaffold.manifest</code> under the project root.
+ */
+
+public class ScaffoldManifest
+{
+    //
+    // Public statics
+    //
+
+    public static final String MANIFEST_DIRECTORY = ".forge";
+
+    public static final String MANIFEST_FILE = "spring-scaffold.manifest";
+
+    //
+    // Private statics
+    //
+
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+
+    private static final String ENCODING = "UTF-8";
+
+    //
+    // Private members
+    //
+
+    private final Project project;
+
+    private final Properties digests = new Properties();
+
+    //
+    // Constructor
+    //
+
+    public ScaffoldManifest(Project project)
+    {
+        this.project = project;
+
+        FileResource<?> manifest = getManifestResource();
+
+        if (manifest.exists())
+        {
+            InputStream in = manifest.getResourceInputStream();
+
+            try
+            {
+                this.digests.load(in);
+            }
+            catch (IOException e)
+            {
+                // A corrupt manifest just means everything gets regenerated
+
+                this.digests.clear();
+            }
+            finally
+            {
+                Streams.closeQuietly(in);
+            }
+        }
+    }
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Computes the digest of the given classpath resources (typically templates and Metawidget configs) and settings.
+     * This is computed once per run, and then mixed into every entity's digest.
+     */
+
+    public static String generatorDigest(ClassLoader classLoader, Collection<String> resources, String... settings)
+    {
+        MessageDigest digest = newDigest();
+
+        for (String resource : resources)
+        {
+            InputStream in = classLoader.getResourceAsStream(resource);
+
+            update(digest, resource);
+
+            if (in != null)
+            {
+                update(digest, Streams.toString(in));
+                Streams.closeQuietly(in);
+            }
+        }
+
+        for (String setting : settings)
+        {
+            update(digest, String.valueOf(setting));
+        }
+
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Computes the digest of the given entity, as scaffolded to the given <code>targetDir</code>.
+     */
+
+    public String digest(JavaClass entity, String targetDir, String generatorDigest)
+    {
+        MessageDigest digest = newDigest();
+        update(digest, generatorDigest);
+        update(digest, targetDir);
+        update(digest, entity.toString());
+
+        // Every project type referred to by a field may affect the inspection of this entity
+
+        JavaSourceFacet java = this.project.getFacet(JavaSourceFacet.class);
+        Set<String> referencedTypes = CollectionUtils.newTreeSet();
+
+        for (Field<?> field : entity.getFields())
+        {
+            referencedTypes.add(entity.resolveType(field.getType()));
+
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            List<Type<?>> typeArguments = (List) field.getTypeInspector().getTypeArguments();
+
+            for (Type<?> typeArgument : typeArguments)
+            {
+                referencedTypes.add(entity.resolveType(typeArgument.getQualifiedName()));
+            }
+        }
+
+        referencedTypes.remove(entity.getQualifiedName());
+
+        for (String referencedType : referencedTypes)
+        {
+            try
+            {
+                JavaResource resource = java.getJavaResource(referencedType);
+
+                if (resource.exists())
+                {
+                    InputStream in = resource.getResourceInputStream();
+
+                    try
+                    {
+                        update(digest, referencedType);
+                        update(digest, Streams.toString(in));
+                    }
+                    finally
+                    {
+                        Streams.closeQuietly(in);
+                    }
+                }
+            }
+            catch (FileNotFoundException e)
+            {
+                // Not a Forge-based type
+            }
+        }
+
+        return toHex(digest.digest());
+    }
+
+    public boolean isUnchanged(String key, String digest)
+    {
+        return digest.equals(this.digests.getProperty(key));
+    }
+
+    public void record(String key, String digest)
+    {
+        this.digests.setProperty(key, digest);
+    }
+
+    public void save()
+    {
+        try
+        {
+            StringWriter writer = new StringWriter();
+            this.digests.store(writer, "Spring scaffold manifest. Delete this file to force all entities to be regenerated.");
+            getManifestResource().setContents(writer.toString());
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Unable to write the Spring scaffold manifest", e);
+        }
+    }
+
+    //
+    // Private methods
+    //
+
+    private FileResource<?> getManifestResource()
+    {
+        DirectoryResource directory = this.project.getProjectRoot().getChildDirectory(MANIFEST_DIRECTORY);
+        return (FileResource<?>) directory.getChild(MANIFEST_FILE);
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value)
+    {
+        try
+        {
+            digest.update(value.getBytes(ENCODING));
+
+            // Separate values, so that ("ab", "c") and ("a", "bc") differ
+
+            digest.update((byte) 0);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes)
+    {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+
+        for (byte b : bytes)
+        {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.forge.scaffold.spring;
+
+import org.jboss.forge.project.Project;
+import org.metawidget.config.iface.ConfigReader;
+import org.metawidget.statically.javacode.StaticJavaMetawidget;
+import org.metawidget.statically.jsp.StaticJspMetawidget;
+import org.metawidget.statically.spring.StaticSpringMetawidget;
+
+/**
+ * The set of Metawidgets used to scaffold a single entity.
+ * <p>
+ * Metawidgets are mutable (<code>setValue</code>, <code>setPath</code>, <code>setReadOnly</code>) and so must not be
+ * shared between threads. Each instance of this class should be confined to one thread at a time. Everything behind
+ * the Metawidgets is shared, though: the (immutable) Inspectors, WidgetBuilders and Layouts are shared through the
+ * given <code>ConfigReader</code>, and the Inspectors read the project's <code>JavaSourceCache</code> (whose parsed
+ * sources must be treated as read-only) and the run's <code>InspectionResultCache</code> (a concurrent map, only
+ * cleared between runs). Confining an instance to one thread does not, therefore, confine what it inspects.
+ * <p>
+ * The Metawidgets are configured eagerly, so that the <code>ConfigReader</code> is only ever used by the thread that
+ * creates them.
+ */
+
+public class ScaffoldMetawidgets
+{
+    //
+    // Public statics
+    //
+
+    public static final String ENTITY_CONFIG = "scaffold/spring/metawidget-entity.xml";
+
+    public static final String HEADER_CONFIG = "scaffold/spring/metawidget-header.xml";
+
+    public static final String RESULT_CONFIG = "scaffold/spring/metawidget-result.xml";
+
+    public static final String QBE_CONFIG = "scaffold/spring/metawidget-qbe.xml";
+
+    public static final String SEARCH_CONFIG = "scaffold/spring/metawidget-search.xml";
+
+    //
+    // Private statics
+    //
+
+    private static final String PROJECT_ATTRIBUTE = ScaffoldMetawidgets.class.getName();
+
+    //
+    // Private members
+    //
+
+    private final ConfigReader configReader;
+
+    private final StaticSpringMetawidget entityMetawidget;
+
+    private final StaticJspMetawidget headerMetawidget;
+
+    private final StaticJspMetawidget resultMetawidget;
+
+    private final StaticJavaMetawidget qbeMetawidget;
+
+    private final StaticSpringMetawidget searchMetawidget;
+
+    //
+    // Constructor
+    //
+
+    public ScaffoldMetawidgets(ConfigReader configReader)
+    {
+        this.configReader = configReader;
+
+        this.entityMetawidget = new StaticSpringMetawidget();
+        this.entityMetawidget.setConfigReader(configReader);
+        this.entityMetawidget.setConfig(ENTITY_CONFIG);
+
+        this.headerMetawidget = new StaticJspMetawidget();
+        this.headerMetawidget.setConfigReader(configReader);
+        this.headerMetawidget.setConfig(HEADER_CONFIG);
+
+        this.resultMetawidget = new StaticJspMetawidget();
+        this.resultMetawidget.setConfigReader(configReader);
+        this.resultMetawidget.setConfig(RESULT_CONFIG);
+
+        this.qbeMetawidget = new StaticJavaMetawidget();
+        this.qbeMetawidget.setConfigReader(configReader);
+        this.qbeMetawidget.setConfig(QBE_CONFIG);
+
+        this.searchMetawidget = new StaticSpringMetawidget();
+        this.searchMetawidget.setConfigReader(configReader);
+        this.searchMetawidget.setConfig(SEARCH_CONFIG);
+
+        // Metawidgets configure themselves lazily.  Force it now
+
+        this.entityMetawidget.getWidgetProcessors();
+        this.headerMetawidget.getWidgetProcessors();
+        this.resultMetawidget.getWidgetProcessors();
+        this.qbeMetawidget.getWidgetProcessors();
+        this.searchMetawidget.getWidgetProcessors();
+    }
+
+    //
+    // Public statics
+    //
+
+    /**
+     * Returns the Metawidgets kept on the given project for the given <code>ConfigReader</code>, creating them if
+     * necessary. Used in resident mode, so that consecutive runs share configured Metawidgets. Runs against the same
+     * project must not overlap.
+     */
+
+    public static ScaffoldMetawidgets forProject(ConfigReader configReader, Project project)
+    {
+        synchronized (project)
+        {
+            ScaffoldMetawidgets metawidgets = (ScaffoldMetawidgets) project.getAttribute(PROJECT_ATTRIBUTE);
+
+            if (metawidgets == null || metawidgets.configReader != configReader)
+            {
+                metawidgets = new ScaffoldMetawidgets(configReader);
+                project.setAttribute(PROJECT_ATTRIBUTE, metawidgets);
+            }
+
+            return metawidgets;
+        }
+    }
+
+    //
+    // Public methods
+    //
+
+    public StaticSpringMetawidget getEntityMetawidget()
+    {
+        return this.entityMetawidget;
+    }
+
+    public StaticJspMetawidget getHeaderMetawidget()
+    {
+        return this.headerMetawidget;
+    }
+
+    public StaticJspMetawidget getResultMetawidget()
+    {
+        return this.resultMetawidget;
+    }
+
+    public StaticJavaMetawidget getQbeMetawidget()
+    {
+        return this.qbeMetawidget;
+    }
+
+    public StaticSpringMetawidget getSearchMetawidget()
+    {
+        return this.searchMetawidget;
+    }
+}
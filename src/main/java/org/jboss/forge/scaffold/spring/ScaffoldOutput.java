@@ -0,0 +1,510 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.forge.scaffold.spring;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jboss.forge.resources.FileResource;
+import org.jboss.forge.resources.Resource;
+import org.jboss.forge.scaffold.util.ScaffoldUtil;
+import org.jboss.forge.shell.ShellPrompt;
+import org.jboss.forge.shell.util.Streams;
+
+/**
+ * Writes scaffold output through <code>ScaffoldUtil.createOrOverwrite</code>, but leaves files whose contents would not
+ * change untouched.
+ * <p>
+ * Not touching unchanged files preserves their modification times, so that incremental builds downstream of a no-op
+ * scaffold (compilation, JSP precompilation, WAR packaging) are no-ops too. Existing files are compared by size first,
+ * and then by digest. The number of files written and skipped is counted until the next <code>reset</code>.
+ * <p>
+ * Between <code>start</code> and <code>finish</code>, changed files are written by a background thread instead, so that
+ * rendering continues while the I/O drains. Whether to write (including any 'overwrite?' prompt) is still decided on the
+ * calling thread; only the write itself is queued. Each file is written to a temporary file in the same directory, and
+ * then renamed over the target, so a file is never seen half-written. <code>finish</code> waits for every queued write,
+ * and rethrows the first that failed.
+ */
+
+public class ScaffoldOutput
+{
+    //
+    // Private statics
+    //
+
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    /**
+     * Queued after the last write, to stop the writer thread.
+     */
+
+    private static final PendingWrite END_OF_WRITES = new PendingWrite(null, null);
+
+    //
+    // Private members
+    //
+
+    private final ShellPrompt prompt;
+
+    private final AtomicInteger written = new AtomicInteger();
+
+    private final AtomicInteger skipped = new AtomicInteger();
+
+    /**
+     * Contents queued but not yet written, by file. Consulted in place of the file itself, so that a file written twice
+     * in one run is compared against its latest contents.
+     */
+
+    private final Map<File, byte[]> pending = new ConcurrentHashMap<File, byte[]>();
+
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    private BlockingQueue<PendingWrite> queue;
+
+    private Thread writer;
+
+    //
+    // Constructor
+    //
+
+    public ScaffoldOutput(ShellPrompt prompt)
+    {
+        this.prompt = prompt;
+    }
+
+    //
+    // Public methods
+    //
+
+    public Resource<?> createOrOverwrite(FileResource<?> resource, String contents, boolean overwrite)
+    {
+        // FileResource.setContents(String) uses the platform encoding, so compare using the same
+
+        if (isUnchanged(resource, contents.getBytes()))
+        {
+            this.skipped.incrementAndGet();
+            return resource;
+        }
+
+        if (this.queue != null)
+        {
+            return enqueue(resource, contents.getBytes(), overwrite);
+        }
+
+        this.written.incrementAndGet();
+        return ScaffoldUtil.createOrOverwrite(this.prompt, resource, contents, overwrite);
+    }
+
+    public Resource<?> createOrOverwrite(FileResource<?> resource, InputStream contents, boolean overwrite)
+    {
+        byte[] bytes = toByteArray(contents);
+
+        if (isUnchanged(resource, bytes))
+        {
+            this.skipped.incrementAndGet();
+            return resource;
+        }
+
+        if (this.queue != null)
+        {
+            return enqueue(resource, bytes, overwrite);
+        }
+
+        this.written.incrementAndGet();
+        return ScaffoldUtil.createOrOverwrite(this.prompt, resource, new ByteArrayInputStream(bytes), overwrite);
+    }
+
+    /**
+     * Starts writing on a background thread, queueing at most <code>capacity</code> files before blocking the caller. A
+     * capacity of 0 or less writes synchronously, as before.
+     */
+
+    public void start(int capacity)
+    {
+        close();
+        this.failure.set(null);
+
+        if (capacity <= 0)
+        {
+            return;
+        }
+
+        final BlockingQueue<PendingWrite> queue = new ArrayBlockingQueue<PendingWrite>(capacity);
+
+        this.writer = new Thread("spring-scaffold-writer")
+        {
+            @Override
+            public void run()
+            {
+                drain(queue);
+            }
+        };
+        this.writer.setDaemon(true);
+        this.queue = queue;
+        this.writer.start();
+    }
+
+    /**
+     * Waits for every queued write to complete, and reverts to writing synchronously. Rethrows the first write that
+     * failed, if any.
+     */
+
+    public void finish()
+    {
+        close();
+
+        Throwable throwable = this.failure.getAndSet(null);
+
+        if (throwable != null)
+        {
+            throw new RuntimeException("Error writing Spring scaffolding", throwable);
+        }
+    }
+
+    /**
+     * Waits for every queued write to complete, and reverts to writing synchronously, without reporting failures. Safe
+     * to call when not started.
+     */
+
+    public void close()
+    {
+        if (this.queue == null)
+        {
+            return;
+        }
+
+        boolean interrupted = false;
+
+        try
+        {
+            while (true)
+            {
+                try
+                {
+                    this.queue.put(END_OF_WRITES);
+                    break;
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+
+            while (this.writer.isAlive())
+            {
+                try
+                {
+                    this.writer.join();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        finally
+        {
+            this.queue = null;
+            this.writer = null;
+            this.pending.clear();
+
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public int getWritten()
+    {
+        return this.written.get();
+    }
+
+    public int getSkipped()
+    {
+        return this.skipped.get();
+    }
+
+    public void reset()
+    {
+        this.written.set(0);
+        this.skipped.set(0);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Wrote " + getWritten() + " file(s), skipped " + getSkipped() + " unchanged file(s)";
+    }
+
+    //
+    // Protected methods
+    //
+
+    /**
+     * Whether the given resource already exists with exactly the given contents.
+     */
+
+    protected boolean isUnchanged(FileResource<?> resource, byte[] contents)
+    {
+        File file = (File) resource.getUnderlyingResourceObject();
+        byte[] queued = this.pending.get(file);
+
+        if (queued != null)
+        {
+            return Arrays.equals(queued, contents);
+        }
+
+        if (!resource.exists())
+        {
+            return false;
+        }
+
+        if (file.length() != contents.length)
+        {
+            return false;
+        }
+
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            InputStream in = new FileInputStream(file);
+
+            try
+            {
+                byte[] buffer = new byte[8192];
+
+                for (int read = in.read(buffer); read != -1; read = in.read(buffer))
+                {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            finally
+            {
+                Streams.closeQuietly(in);
+            }
+
+            return Arrays.equals(digest.digest(), MessageDigest.getInstance(DIGEST_ALGORITHM).digest(contents));
+        }
+        catch (IOException e)
+        {
+            // Cannot tell, so write it
+
+            return false;
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes the given contents to a temporary file alongside the given file, then renames it over the given file.
+     */
+
+    protected void write(File file, byte[] contents)
+        throws IOException
+    {
+        File directory = file.getAbsoluteFile().getParentFile();
+
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+        {
+            throw new IOException("Unable to create directory " + directory);
+        }
+
+        File temp = File.createTempFile(file.getName(), TEMP_FILE_SUFFIX, directory);
+
+        try
+        {
+            FileOutputStream out = new FileOutputStream(temp);
+
+            try
+            {
+                FileChannel channel = out.getChannel();
+                ByteBuffer buffer = ByteBuffer.wrap(contents);
+
+                while (buffer.hasRemaining())
+                {
+                    channel.write(buffer);
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+
+            // File.renameTo does not replace an existing file on every platform
+
+            if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file)))
+            {
+                throw new IOException("Unable to rename " + temp + " to " + file);
+            }
+        }
+        finally
+        {
+            if (temp.exists())
+            {
+                temp.delete();
+            }
+        }
+    }
+
+    //
+    // Private methods
+    //
+
+    private Resource<?> enqueue(FileResource<?> resource, byte[] contents, boolean overwrite)
+    {
+        Throwable throwable = this.failure.get();
+
+        if (throwable != null)
+        {
+            throw new RuntimeException("Error writing Spring scaffolding", throwable);
+        }
+
+        File file = (File) resource.getUnderlyingResourceObject();
+
+        // Prompt on this thread, the same way ScaffoldUtil.createOrOverwrite would
+
+        if (!overwrite && (this.pending.containsKey(file) || resource.exists())
+                    && !this.prompt.promptBoolean("[" + resource.getFullyQualifiedName() + "] File exists, overwrite?"))
+        {
+            return null;
+        }
+
+        this.pending.put(file, contents);
+        this.written.incrementAndGet();
+
+        try
+        {
+            this.queue.put(new PendingWrite(file, contents));
+        }
+        catch (InterruptedException e)
+        {
+            this.pending.remove(file);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted writing " + file, e);
+        }
+
+        return resource;
+    }
+
+    private void drain(BlockingQueue<PendingWrite> queue)
+    {
+        while (true)
+        {
+            PendingWrite write;
+
+            try
+            {
+                write = queue.take();
+            }
+            catch (InterruptedException e)
+            {
+                this.failure.compareAndSet(null, e);
+                return;
+            }
+
+            if (write == END_OF_WRITES)
+            {
+                return;
+            }
+
+            // After a failure, keep draining (so the caller never blocks) but stop writing
+
+            if (this.failure.get() == null)
+            {
+                try
+                {
+                    write(write.file, write.contents);
+                }
+                catch (Throwable t)
+                {
+                    this.failure.compareAndSet(null, t);
+                }
+            }
+
+            this.pending.remove(write.file, write.contents);
+        }
+    }
+
+    private byte[] toByteArray(InputStream in)
+    {
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer))
+            {
+                out.write(buffer, 0, read);
+            }
+
+            return out.toByteArray();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        finally
+        {
+            Streams.closeQuietly(in);
+        }
+    }
+
+    //
+    // Inner classes
+    //
+
+    private static class PendingWrite
+    {
+        final File file;
+
+        final byte[] contents;
+
+        PendingWrite(File file, byte[] contents)
+        {
+            this.file = file;
+            this.contents = contents;
+        }
+    }
+}
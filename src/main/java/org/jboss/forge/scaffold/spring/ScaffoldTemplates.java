@@ -0,0 +1,162 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.forge.scaffold.spring;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jboss.forge.shell.util.Streams;
+import org.jboss.seam.render.TemplateCompiler;
+import org.jboss.seam.render.template.CompiledTemplateResource;
+
+/**
+ * Process-wide cache of the compiled scaffold templates, and of the indents at which Metawidgets are written into them.
+ * <p>
+ * The templates are classpath resources, so they never change while Forge is running. Compiling each one once per
+ * <code>TemplateCompiler</code> (rather than once per <code>SpringScaffold</code> or <code>SpringPlugin</code> instance,
+ * which is to say once per project and per invocation) and reading each one once to find its indents removes the
+ * compile latency from every scaffold command after the first. Templates are cached per compiler, because each
+ * compiler may resolve the same path to a different (for example, overridden) template.
+ */
+
+public final class ScaffoldTemplates
+{
+    //
+    // Private statics
+    //
+
+    private static final Map<TemplateCompiler, Map<String, CompiledTemplateResource>> TEMPLATES = new WeakHashMap<TemplateCompiler, Map<String, CompiledTemplateResource>>();
+
+    private static final Map<CompiledTemplateResource, Map<String, Integer>> INDENTS = new WeakHashMap<CompiledTemplateResource, Map<String, Integer>>();
+
+    //
+    // Public statics
+    //
+
+    /**
+     * Returns the template at the given location, compiling it with the given compiler if this is the first time that
+     * compiler has been asked for it.
+     */
+
+    public static CompiledTemplateResource compile(TemplateCompiler compiler, String template)
+    {
+        Map<String, CompiledTemplateResource> templates;
+
+        synchronized (TEMPLATES)
+        {
+            templates = TEMPLATES.get(compiler);
+
+            if (templates == null)
+            {
+                templates = new ConcurrentHashMap<String, CompiledTemplateResource>();
+                TEMPLATES.put(compiler, templates);
+            }
+        }
+
+        CompiledTemplateResource compiled = templates.get(template);
+
+        if (compiled == null)
+        {
+            // Racing threads may both compile, but will produce equivalent templates
+
+            compiled = compiler.compile(template);
+            templates.put(template, compiled);
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Returns the number of tabs preceding the given placeholder in the source of the given compiled template.
+     */
+
+    public static int indentOf(CompiledTemplateResource template, String placeholder)
+    {
+        Map<String, Integer> indents;
+
+        synchronized (INDENTS)
+        {
+            indents = INDENTS.get(template);
+
+            if (indents == null)
+            {
+                indents = new ConcurrentHashMap<String, Integer>();
+                INDENTS.put(template, indents);
+            }
+        }
+
+        Integer indent = indents.get(placeholder);
+
+        if (indent == null)
+        {
+            InputStream in = template.getSourceTemplateResource().getInputStream();
+
+            try
+            {
+                indent = parseIndent(Streams.toString(in), placeholder);
+            }
+            finally
+            {
+                Streams.closeQuietly(in);
+            }
+
+            indents.put(placeholder, indent);
+        }
+
+        return indent;
+    }
+
+    /**
+     * Parses the given template and determines the indent of the given String.
+     */
+
+    public static int parseIndent(final String template, final String indentOf)
+    {
+        int indent = 0;
+        int indexOf = template.indexOf(indentOf);
+
+        while ((indexOf > 0) && (template.charAt(indexOf) != '\n'))
+        {
+            if (template.charAt(indexOf) == '\t')
+            {
+                indent++;
+            }
+
+            indexOf--;
+        }
+
+        return indent;
+    }
+
+    //
+    // Private constructor
+    //
+
+    private ScaffoldTemplates()
+    {
+        // Can never be called
+    }
+}
@@ -0,0 +1,433 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.forge.scaffold.spring;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.persistence.Entity;
+
+import org.jboss.forge.parser.java.JavaClass;
+import org.jboss.forge.parser.java.JavaSource;
+import org.jboss.forge.project.Project;
+import org.jboss.forge.project.facets.JavaSourceFacet;
+import org.jboss.forge.scaffold.spring.metawidget.inspector.propertystyle.JavaSourceCache;
+import org.jboss.forge.shell.ShellMessages;
+import org.jboss.forge.shell.ShellPrintWriter;
+import org.metawidget.util.CollectionUtils;
+
+/**
+ * Watches a project's Java sources, and regenerates the scaffolding of the entities that change.
+ * <p>
+ * The source folder is polled for changed, added and removed files. A burst of changes (such as a save-all, or a
+ * refactoring) is collected until the sources have been quiet for a while, and then regenerated in one run: the
+ * changed entities, plus every entity with a relationship to one of the changed types. Runs happen on a background
+ * daemon thread, with the scaffold in resident mode so that inspection results stay warm between runs.
+ */
+
+public class ScaffoldWatcher
+    implements Runnable
+{
+    //
+    // Private statics
+    //
+
+    private static final String PROJECT_ATTRIBUTE = ScaffoldWatcher.class.getName();
+
+    private static final String JAVA_SUFFIX = ".java";
+
+    //
+    // Private members
+    //
+
+    private final SpringScaffold scaffold;
+
+    private final Project project;
+
+    private final String targetDir;
+
+    private final long interval;
+
+    private final long quietPeriod;
+
+    private final ShellPrintWriter out;
+
+    /**
+     * Last-modified time and length of every source file, as of the last poll, keyed by type.
+     */
+
+    private final Map<String, long[]> stamps = CollectionUtils.newHashMap();
+
+    private volatile Thread thread;
+
+    //
+    // Constructor
+    //
+
+    public ScaffoldWatcher(SpringScaffold scaffold, Project project, String targetDir, long interval, long quietPeriod,
+                    ShellPrintWriter out)
+    {
+        this.scaffold = scaffold;
+        this.project = project;
+        this.targetDir = targetDir;
+        this.interval = interval;
+        this.quietPeriod = quietPeriod;
+        this.out = out;
+    }
+
+    //
+    // Public statics
+    //
+
+    /**
+     * Starts the given watcher on its project, stopping any watcher already running there.
+     */
+
+    public static void start(ScaffoldWatcher watcher)
+    {
+        stop(watcher.project);
+
+        watcher.scaffold.setResident(true);
+        watcher.scaffold.setProject(watcher.project);
+        watcher.scaffold.warm();
+        watcher.poll();
+
+        Thread thread = new Thread(watcher, "spring-scaffold-watch");
+        thread.setContextClassLoader(SpringScaffold.class.getClassLoader());
+        thread.setDaemon(true);
+        watcher.thread = thread;
+        thread.start();
+
+        ScaffoldWatcher previous;
+
+        synchronized (watcher.project)
+        {
+            previous = (ScaffoldWatcher) watcher.project.getAttribute(PROJECT_ATTRIBUTE);
+            watcher.project.setAttribute(PROJECT_ATTRIBUTE, watcher);
+        }
+
+        // Another watcher was started meanwhile
+
+        if (previous != null)
+        {
+            previous.stop();
+        }
+    }
+
+    /**
+     * Stops the watcher running on the given project, if any, and waits for any run in progress to finish.
+     *
+     * @return whether a watcher was running
+     */
+
+    public static boolean stop(Project project)
+    {
+        ScaffoldWatcher watcher;
+
+        // Only swap the attribute under the project's monitor: a run in progress needs that monitor (for the run lock,
+        // and the project's shared caches) before it can finish, so it must not be held while waiting for the run
+
+        synchronized (project)
+        {
+            watcher = (ScaffoldWatcher) project.getAttribute(PROJECT_ATTRIBUTE);
+            project.removeAttribute(PROJECT_ATTRIBUTE);
+        }
+
+        if (watcher == null || !watcher.isRunning())
+        {
+            return false;
+        }
+
+        watcher.stop();
+        return true;
+    }
+
+    //
+    // Public methods
+    //
+
+    public boolean isRunning()
+    {
+        Thread current = this.thread;
+        return current != null && current.isAlive();
+    }
+
+    public void stop()
+    {
+        Thread current = this.thread;
+        this.thread = null;
+
+        if (current == null)
+        {
+            return;
+        }
+
+        current.interrupt();
+
+        try
+        {
+            current.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        Set<String> pending = CollectionUtils.newHashSet();
+        long lastChange = 0;
+
+        while (this.thread == Thread.currentThread())
+        {
+            try
+            {
+                Thread.sleep(this.interval);
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+
+            Set<String> changed = poll();
+
+            if (!changed.isEmpty())
+            {
+                pending.addAll(changed);
+                lastChange = System.currentTimeMillis();
+                continue;
+            }
+
+            // Debounce: wait for the sources to go quiet before regenerating
+
+            if (pending.isEmpty() || System.currentTimeMillis() - lastChange < this.quietPeriod)
+            {
+                continue;
+            }
+
+            try
+            {
+                regenerate(pending);
+            }
+            catch (Exception e)
+            {
+                // Keep watching: the next save will probably fix it
+
+                if (this.out != null)
+                {
+                    ShellMessages.error(this.out, "Could not regenerate scaffolding: " + e.getMessage());
+                }
+            }
+
+            pending.clear();
+
+            // Ignore the sources the run itself just wrote (DAOs, controllers, converters), but not entities that were
+            // edited meanwhile
+
+            JavaSourceCache sources = JavaSourceCache.forProject(this.project);
+
+            for (String type : poll())
+            {
+                if (toEntity(sources.getJavaSource(type)) != null)
+                {
+                    pending.add(type);
+                    lastChange = System.currentTimeMillis();
+                }
+            }
+        }
+    }
+
+    //
+    // Protected methods
+    //
+
+    /**
+     * Walks the source folder, and returns the types whose files were added, changed or removed since the last poll.
+     */
+
+    protected Set<String> poll()
+    {
+        File root = (File) this.project.getFacet(JavaSourceFacet.class).getSourceFolder().getUnderlyingResourceObject();
+        Map<String, long[]> current = CollectionUtils.newHashMap();
+        walk(root, "", current);
+
+        Set<String> changed = CollectionUtils.newHashSet();
+
+        for (Map.Entry<String, long[]> entry : current.entrySet())
+        {
+            long[] previous = this.stamps.get(entry.getKey());
+
+            if (previous == null || previous[0] != entry.getValue()[0] || previous[1] != entry.getValue()[1])
+            {
+                changed.add(entry.getKey());
+            }
+        }
+
+        for (String type : this.stamps.keySet())
+        {
+            if (!current.containsKey(type))
+            {
+                changed.add(type);
+            }
+        }
+
+        this.stamps.clear();
+        this.stamps.putAll(current);
+
+        return changed;
+    }
+
+    /**
+     * Regenerates the changed entities among the given types, and the entities related to any of the given types.
+     */
+
+    protected void regenerate(Collection<String> types)
+    {
+        // Hold the project's run lock throughout, so that a foreground scaffold run cannot change the shared caches
+        // (nor clear the inspection results) while they are being read here
+
+        ReentrantLock runLock = SpringScaffold.getRunLock(this.project);
+        runLock.lock();
+
+        try
+        {
+            regenerateLocked(types);
+        }
+        finally
+        {
+            runLock.unlock();
+        }
+    }
+
+    //
+    // Private methods
+    //
+
+    private void regenerateLocked(Collection<String> types)
+    {
+        JavaSourceCache sources = JavaSourceCache.forProject(this.project);
+        EntityGraph graph = EntityGraph.forProject(this.project);
+        Map<String, JavaClass> entities = CollectionUtils.newLinkedHashMap();
+
+        for (String type : types)
+        {
+            JavaClass entity = toEntity(sources.getJavaSource(type));
+
+            if (entity != null)
+            {
+                entities.put(type, entity);
+            }
+        }
+
+        // Entities related to a changed type render differently too (e.g. their lookups and N-to-many tables)
+
+        for (String type : this.stamps.keySet())
+        {
+            if (entities.containsKey(type))
+            {
+                continue;
+            }
+
+            JavaClass entity = toEntity(sources.getJavaSource(type));
+
+            if (entity != null && isRelatedTo(graph.getNode(entity), types))
+            {
+                entities.put(type, entity);
+            }
+        }
+
+        if (entities.isEmpty())
+        {
+            return;
+        }
+
+        this.scaffold.generateFromEntities(this.targetDir, null, new ArrayList<JavaClass>(entities.values()), true);
+
+        if (this.out != null)
+        {
+            ShellMessages.info(this.out, "Regenerated scaffolding for " + entities.keySet());
+        }
+    }
+
+    private void walk(File directory, String packagePrefix, Map<String, long[]> stamps)
+    {
+        File[] children = directory.listFiles();
+
+        if (children == null)
+        {
+            return;
+        }
+
+        for (File child : children)
+        {
+            String name = child.getName();
+
+            if (child.isDirectory())
+            {
+                walk(child, packagePrefix + name + ".", stamps);
+            }
+            else if (name.endsWith(JAVA_SUFFIX))
+            {
+                String type = packagePrefix + name.substring(0, name.length() - JAVA_SUFFIX.length());
+                stamps.put(type, new long[] { child.lastModified(), child.length() });
+            }
+        }
+    }
+
+    private JavaClass toEntity(JavaSource<?> source)
+    {
+        if (source instanceof JavaClass && source.hasAnnotation(Entity.class))
+        {
+            return (JavaClass) source;
+        }
+
+        return null;
+    }
+
+    private boolean isRelatedTo(EntityGraph.EntityNode node, Collection<String> types)
+    {
+        for (EntityGraph.Relationship relationship : node.getRelationships())
+        {
+            String target = relationship.getTargetType();
+
+            if (relationship.getTargetPackage() != null)
+            {
+                target = relationship.getTargetPackage() + "." + target;
+            }
+
+            if (types.contains(target))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
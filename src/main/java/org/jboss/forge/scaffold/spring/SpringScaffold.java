@@ -22,30 +22,36 @@
 
 package org.jboss.forge.scaffold.spring;
 
-import static org.jvnet.inflector.Noun.pluralOf;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.enterprise.event.Event;
 import javax.inject.Inject;
-import javax.persistence.ManyToMany;
-import javax.persistence.ManyToOne;
-import javax.persistence.OneToMany;
-import javax.persistence.OneToOne;
 
 import org.jboss.forge.env.Configuration;
 import org.jboss.forge.parser.JavaParser;
 import org.jboss.forge.parser.java.Field;
-import org.jboss.forge.parser.java.Import;
 import org.jboss.forge.parser.java.JavaClass;
-import org.jboss.forge.parser.java.JavaInterface;
 import org.jboss.forge.parser.java.Method;
+import org.jboss.forge.parser.java.util.Formatter;
 import org.jboss.forge.parser.xml.Node;
 import org.jboss.forge.parser.xml.XMLParser;
 import org.jboss.forge.project.Project;
@@ -61,12 +67,15 @@ import org.jboss.forge.project.facets.events.InstallFacets;
 import org.jboss.forge.resources.FileResource;
 import org.jboss.forge.resources.Resource;
 import org.jboss.forge.resources.ResourceFilter;
+import org.jboss.forge.resources.java.JavaResource;
 import org.jboss.forge.scaffold.AccessStrategy;
 import org.jboss.forge.scaffold.ScaffoldProvider;
 import org.jboss.forge.scaffold.TemplateStrategy;
 import org.jboss.forge.scaffold.spring.metawidget.config.ForgeConfigReader;
+import org.jboss.forge.scaffold.spring.metawidget.inspector.propertystyle.JavaSourceCache;
 import org.jboss.forge.scaffold.spring.metawidget.widgetbuilder.HtmlAnchor;
-import org.jboss.forge.scaffold.util.ScaffoldUtil;
+import org.jboss.forge.shell.ShellMessages;
+import org.jboss.forge.shell.ShellPrintWriter;
 import org.jboss.forge.shell.ShellPrompt;
 import org.jboss.forge.shell.plugins.Alias;
 import org.jboss.forge.shell.plugins.Help;
@@ -139,6 +148,131 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
     private static final String ERROR_TEMPLATE = "scaffold/spring/error.jsp";
     private static final String INDEX_TEMPLATE = "scaffold/spring/index.jsp";
 
+    private static final String CACHE_STATISTICS_TEMPLATE = "scaffold/spring/CacheStatisticsTemplate.jv";
+
+    /**
+     * Templates and configs whose contents affect the per-entity scaffolding, and so are part of each entity's digest.
+     */
+
+    private static final List<String> GENERATOR_RESOURCES = Arrays.asList(SPRING_CONTROLLER_TEMPLATE, DAO_INTERFACE_TEMPLATE,
+                DAO_IMPLEMENTATION_TEMPLATE, ENTITY_CONVERTER_TEMPLATE, VIEW_TEMPLATE, SEARCH_TEMPLATE, EDIT_TEMPLATE,
+                CREATE_TEMPLATE, ScaffoldMetawidgets.ENTITY_CONFIG, ScaffoldMetawidgets.HEADER_CONFIG,
+                ScaffoldMetawidgets.RESULT_CONFIG, ScaffoldMetawidgets.QBE_CONFIG, ScaffoldMetawidgets.SEARCH_CONFIG);
+
+    /**
+     * Number of threads used to render entities in <code>generateFromEntities</code>. Defaults to 1 (render on the
+     * calling thread). 0 or less means one thread per available processor.
+     */
+
+    private static final String GENERATION_THREADS = SpringScaffold.class.getName() + "_generationThreads";
+
+    /**
+     * Whether <code>generateFromEntities</code> skips entities whose inputs are unchanged since they were last
+     * scaffolded, as recorded in the <code>ScaffoldManifest</code>. Defaults to false, so that every run regenerates
+     * (and, with <code>overwrite</code>, overwrites) every entity it is given.
+     */
+
+    private static final String INCREMENTAL = SpringScaffold.class.getName() + "_incremental";
+
+    /**
+     * Number of files <code>generateFromEntities</code> may queue for a background thread to write, while it carries on
+     * rendering. Defaults to 0 (write synchronously, on the calling thread).
+     */
+
+    private static final String WRITE_QUEUE_CAPACITY = SpringScaffold.class.getName() + "_writeQueueCapacity";
+
+    private static final String RUN_LOCK = SpringScaffold.class.getName() + "_runLock";
+
+    //
+    // Public statics
+    //
+
+    /**
+     * Whether to keep Metawidgets and inspection results warm between scaffolding runs (and, through a snapshot on
+     * disk, between Forge sessions) rather than starting afresh each time. Inspection results are still discarded as
+     * soon as a source they were inspected from changes. Defaults to false. Set by the <code>spring resident</code>
+     * command.
+     */
+
+    public static final String RESIDENT = SpringScaffold.class.getName() + "_resident";
+
+    /**
+     * Whether generated controllers page through search results by key (<code>WHERE id &gt; :lastId ORDER BY id</code>)
+     * rather than by offset, so that deep pages cost no more than the first. Defaults to false. Set by the
+     * <code>spring pagination</code> command.
+     */
+
+    public static final String KEYSET_PAGINATION = SpringScaffold.class.getName() + "_keysetPagination";
+
+    /**
+     * How generated search pages count their results: one of the <code>CountStrategy</code> names. Defaults to
+     * <code>EXACT</code>. Overridden for a single entity by the same key suffixed with <code>_</code> and the entity's
+     * qualified name. Set by the <code>spring count-strategy</code> command.
+     */
+
+    public static final String COUNT_STRATEGY = SpringScaffold.class.getName() + "_countStrategy";
+
+    /**
+     * Seconds that <code>CountStrategy.CACHED</code> reuses a count for. Defaults to 60.
+     */
+
+    public static final String COUNT_CACHE_TTL = SpringScaffold.class.getName() + "_countCacheTtl";
+
+    /**
+     * Native SQL that <code>CountStrategy.ESTIMATED</code> reads a table's estimated row count with, given the table
+     * name as parameter <code>?1</code>. Defaults to <code>DEFAULT_COUNT_ESTIMATE_QUERY</code>.
+     */
+
+    public static final String COUNT_ESTIMATE_QUERY = SpringScaffold.class.getName() + "_countEstimateQuery";
+
+    /**
+     * Reads the row count estimate from the <code>INFORMATION_SCHEMA</code> of the H2 database behind the default
+     * JBoss AS7 datasource. PostgreSQL users might use <code>select reltuples from pg_class where relname = ?1</code>
+     * instead.
+     */
+
+    public static final String DEFAULT_COUNT_ESTIMATE_QUERY = "select ROW_COUNT_ESTIMATE from INFORMATION_SCHEMA.TABLES "
+                + "where upper(TABLE_NAME) = upper(?1)";
+
+    /**
+     * Whether generated forms choose related entities through an asynchronous, paged typeahead (backed by a JSON
+     * <code>lookup</code> endpoint on each controller) rather than a dropdown of every related entity. Defaults to
+     * false. Set by the <code>spring typeahead</code> command.
+     */
+
+    public static final String TYPEAHEAD_LOOKUPS = SpringScaffold.class.getName() + "_typeaheadLookups";
+
+    /**
+     * Comma-separated qualified names of the entities kept in Hibernate's second-level cache. Their generated DAOs
+     * cache the results of <code>getAll</code> and <code>lookup</code> in the query cache, and a
+     * <code>CacheStatistics</code> bean reports the hit rates of every cache region. Defaults to none. Set by the
+     * <code>spring cache</code> command, which also configures each entity's cache region in the persistence unit.
+     */
+
+    public static final String SECOND_LEVEL_CACHE = SpringScaffold.class.getName() + "_secondLevelCache";
+
+    /**
+     * Returns the lock that serializes scaffolding runs on the given project. Runs share the project's inspection
+     * results, EntityGraph, ScaffoldManifest and generated files, so a run (say, by <code>spring scaffold-watch</code>)
+     * must not overlap another (say, by <code>scaffold from-entity</code>). The lock is reentrant.
+     */
+
+    public static ReentrantLock getRunLock(Project project)
+    {
+        synchronized (project)
+        {
+            ReentrantLock lock = (ReentrantLock) project.getAttribute(RUN_LOCK);
+
+            if (lock == null)
+            {
+                lock = new ReentrantLock();
+                project.setAttribute(RUN_LOCK, lock);
+            }
+
+            return lock;
+        }
+    }
+
     //
     // Protected members (nothing is private, to help sub-classing)
     //
@@ -177,11 +311,15 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
     protected CompiledTemplateResource errorTemplate;
     protected CompiledTemplateResource indexTemplate;   
 
-    protected StaticSpringMetawidget entityMetawidget;
-    protected StaticJspMetawidget headerMetawidget;
-    protected StaticJspMetawidget resultMetawidget;
-    protected StaticJavaMetawidget qbeMetawidget;
-    protected StaticSpringMetawidget searchMetawidget;
+    protected CompiledTemplateResource cacheStatisticsTemplate;
+
+    protected ForgeConfigReader configReader;
+    protected ScaffoldMetawidgets metawidgets;
+    protected ScaffoldOutput output;
+    protected String generatorDigest;
+    protected List<String> generatorSettings;
+    protected Boolean resident;
+    protected Boolean incremental;
 
     protected TemplateResolver<ClassLoader> resolver;
     protected ShellPrompt prompt;
@@ -204,6 +342,7 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
         this.prompt = prompt;
         this.compiler = compiler;
         this.install = install;
+        this.output = new ScaffoldOutput(prompt);
 
         this.resolver = new ClassLoaderTemplateResolver(SpringScaffold.class.getClassLoader());
         
@@ -242,6 +381,7 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
         targetDir = (targetDir.isEmpty()) ? "/" : "/" + targetDir + "/";
 
         context.put("repoPackage", meta.getTopLevelPackage() + ".repo");
+        context.put("secondLevelCache", !getCachedEntities().isEmpty());
 
         PersistenceDescriptor descriptor = persistence.getConfig();
 
@@ -257,7 +397,7 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
 
         List<Resource<?>> result = generateIndex(targetDir, template, overwrite);
 
-        result.add(ScaffoldUtil.createOrOverwrite(this.prompt, resources.getResource("META-INF/spring/applicationContext.xml"), 
+        result.add(this.output.createOrOverwrite(resources.getResource("META-INF/spring/applicationContext.xml"), 
                 this.applicationContextTemplate.render(context), overwrite));
 
         String filename = "-mvc-context.xml";
@@ -271,7 +411,7 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
             filename = "WEB-INF/" + meta.getProjectName().replace(' ', '-').toLowerCase() + filename;
         }
 
-        result.add(ScaffoldUtil.createOrOverwrite(this.prompt, web.getWebResource(filename),
+        result.add(this.output.createOrOverwrite(web.getWebResource(filename),
                 this.mvcContextTemplate.render(context), overwrite));
 
         context.put("projectName", meta.getProjectName());
@@ -279,7 +419,7 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
 
         if (!web.getWebResource("WEB-INF/web.xml").exists())
         {
-            result.add(ScaffoldUtil.createOrOverwrite(this.prompt, web.getWebResource("WEB-INF/web.xml"),
+            result.add(this.output.createOrOverwrite(web.getWebResource("WEB-INF/web.xml"),
                     this.webXMLTemplate.render(context), overwrite));
         }
         else
@@ -315,211 +455,229 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
     {
         super.setProject(project);
         
-        ForgeConfigReader configReader = new ForgeConfigReader(this.config, this.project);
-        
-        this.entityMetawidget = new StaticSpringMetawidget();
-        this.entityMetawidget.setConfigReader(configReader);
-        this.entityMetawidget.setConfig("scaffold/spring/metawidget-entity.xml");
-
-        this.headerMetawidget = new StaticJspMetawidget();
-        this.headerMetawidget.setConfigReader(configReader);
-        this.headerMetawidget.setConfig("scaffold/spring/metawidget-header.xml");
+        this.configReader = ForgeConfigReader.forProject(this.config, this.project);
 
-        this.resultMetawidget = new StaticJspMetawidget();
-        this.resultMetawidget.setConfigReader(configReader);
-        this.resultMetawidget.setConfig("scaffold/spring/metawidget-result.xml");
+        if (isResident())
+        {
+            this.metawidgets = ScaffoldMetawidgets.forProject(this.configReader, this.project);
+        }
+        else
+        {
+            this.metawidgets = new ScaffoldMetawidgets(this.configReader);
+        }
+    }
 
-        this.qbeMetawidget = new StaticJavaMetawidget();
-        this.qbeMetawidget.setConfigReader(configReader);
-        this.qbeMetawidget.setConfig("scaffold/spring/metawidget-qbe.xml");
+    /**
+     * Overrides the <code>RESIDENT</code> setting for this instance, or restores it if null. Call before
+     * <code>setProject</code>.
+     */
 
-        this.searchMetawidget = new StaticSpringMetawidget();
-        this.searchMetawidget.setConfigReader(configReader);
-        this.searchMetawidget.setConfig("scaffold/spring/metawidget-search.xml");
+    public void setResident(Boolean resident)
+    {
+        this.resident = resident;
     }
 
-    @Override
-    public List<Resource<?>> generateFromEntity(String targetDir, Resource<?> template, JavaClass entity, boolean overwrite)
+    /**
+     * Overrides the <code>INCREMENTAL</code> setting for this instance, or restores it if null.
+     */
+
+    public void setIncremental(Boolean incremental)
     {
+        this.incremental = incremental;
+    }
 
-        // Save the current thread's ContextClassLoader, so that it can be restored later
+    /**
+     * Prepares everything a scaffolding run needs (templates, Metawidgets and, in resident mode, any inspection
+     * results snapshotted by a previous session) ahead of the first run.
+     */
 
+    public void warm()
+    {
         ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
-
-        // Track the list of resources generated
-
-        List<Resource<?>> result = new ArrayList<Resource<?>>();
+        ReentrantLock runLock = getRunLock(this.project);
+        runLock.lock();
 
         try
         {
-            // Force the current thread to use the ScaffoldProvider's ContextClassLoader
-
             Thread.currentThread().setContextClassLoader(SpringScaffold.class.getClassLoader());
 
-            try
-            {
-                JavaSourceFacet java = project.getFacet(JavaSourceFacet.class);
-                WebResourceFacet web = project.getFacet(WebResourceFacet.class);
-                MetadataFacet meta = project.getFacet(MetadataFacet.class);
+            loadTemplates();
 
-                loadTemplates();
+            if (isResident())
+            {
+                prepareInspectionResults();
+            }
+        }
+        finally
+        {
+            Thread.currentThread().setContextClassLoader(oldClassLoader);
+            runLock.unlock();
+        }
+    }
 
-                // Set context for Java and JSP generation
+    @Override
+    public List<Resource<?>> generateFromEntity(String targetDir, Resource<?> template, JavaClass entity, boolean overwrite)
+    {
+        return generateFromEntities(targetDir, template, Collections.singletonList(entity), overwrite);
+    }
 
-                Map<Object, Object> context = CollectionUtils.newHashMap();
-                context.put("entity", entity);
-                String ccEntity = StringUtils.decapitalize(entity.getName());
-                context.put("ccEntity", ccEntity);
+    /**
+     * Generates the scaffolding for several entities in a single run.
+     * <p>
+     * Unlike repeated calls to <code>generateFromEntity</code>, the Tiles definitions, the navigation menus, the
+     * IndexControllers and the ConversionService are built up in memory for the whole run, and written out exactly once
+     * at the end.
+     */
 
-                context.put("topLevelPackage", meta.getTopLevelPackage());
+    public List<Resource<?>> generateFromEntities(String targetDir, Resource<?> template, Collection<JavaClass> entities,
+                    boolean overwrite)
+    {
 
-                String mvcPackage = (targetDir.isEmpty()) ? meta.getTopLevelPackage() + ".mvc.root" : meta.getTopLevelPackage() + ".mvc." +
-                                        targetDir.replace('/', '.');
-                context.put("mvcPackage", mvcPackage);
+        // Save the current thread's ContextClassLoader, so that it can be restored later
 
-                findEntityRelationships(entity, context);
+        ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
 
-                targetDir = processTargetDir(targetDir);
-                targetDir = (targetDir.isEmpty()) ? "/" : "/" + targetDir + "/";
+        // Track the list of resources generated
 
-                context.put("targetDir", targetDir);
-                context.put("entityName", StringUtils.uncamelCase(entity.getName()));
-                String entityPlural = pluralOf(entity.getName());
-                context.put("entityPlural", entityPlural);
-                context.put("entityPluralName", pluralOf(StringUtils.uncamelCase(entity.getName())));
+        List<Resource<?>> result = new ArrayList<Resource<?>>();
 
-                // Prepare entity metawidget
+        // Wait for any other run on this project (such as a scaffold-watch) to finish
 
-                this.entityMetawidget.setValue(ccEntity);
-                this.entityMetawidget.setPath(entity.getQualifiedName());
-                this.entityMetawidget.setReadOnly(false);
+        ReentrantLock runLock = getRunLock(this.project);
+        runLock.lock();
 
-                // Create, or update, a views.xml file containing all tiles definitions.
+        try
+        {
+            // Force the current thread to use the ScaffoldProvider's ContextClassLoader
 
-                Node definitions = new Node("tiles-definitions");
+            Thread.currentThread().setContextClassLoader(SpringScaffold.class.getClassLoader());
 
-                if (web.getWebResource("WEB-INF/views/views.xml").exists())
-                {
-                    definitions = XMLParser.parse(web.getWebResource("WEB-INF/views/views.xml").getResourceInputStream());
-                }
+            WebResourceFacet web = project.getFacet(WebResourceFacet.class);
+            MetadataFacet meta = project.getFacet(MetadataFacet.class);
 
-                String tile = targetDir.equals("/") ? "standard" : targetDir.substring(1, targetDir.length()-1);
+            loadTemplates();
 
-                // Add index page(s)
+            // Every Metawidget shares one set of inspection results per run.  Start afresh (or, in resident mode, from
+            // whatever is still valid), so that changes to the entities since the last run are seen
 
-                if (!targetDir.equals("/"))
-                {
-                    addViewDefinition("standard", "/index", "Weclome to Forge", "Welcome to Forge", "",
-                            "/WEB-INF/views/index.jsp", definitions);
-                }
+            prepareInspectionResults();
+            this.output.reset();
+            this.output.start(getWriteQueueCapacity());
 
-                addViewDefinition(tile, targetDir + "index", "Welcome to Forge", "Welcome to Forge", "",
-                        "/WEB-INF/views" + targetDir + "index.jsp", definitions);
+            String mvcPackage = (targetDir.isEmpty()) ? meta.getTopLevelPackage() + ".mvc.root" : meta.getTopLevelPackage() + ".mvc." +
+                                    targetDir.replace('/', '.');
 
-                // Add error page
+            targetDir = processTargetDir(targetDir);
+            targetDir = (targetDir.isEmpty()) ? "/" : "/" + targetDir + "/";
 
-                addViewDefinition("standard", "/error", "Server Error", "Oops!", "That's going to leave a mark!",
-                        "/WEB-INF/views/error.jsp", definitions);
+            // Create, or update, a views.xml file containing all tiles definitions.  It is parsed once for the whole run.
 
-                // Generate create
+            Node definitions = new Node("tiles-definitions");
 
-                writeMetawidget(context, this.entityMetawidget, this.createTemplateEntityMetawidgetIndent, "metawidget");
-    
-                result.add(ScaffoldUtil.createOrOverwrite(this.prompt, web.getWebResource("WEB-INF/views" + targetDir + entity.getName()
-                        + "/create" + entity.getName() + ".jsp"), this.createTemplate.render(context), overwrite));
+            if (web.getWebResource("WEB-INF/views/views.xml").exists())
+            {
+                definitions = XMLParser.parse(web.getWebResource("WEB-INF/views/views.xml").getResourceInputStream());
+            }
 
-                addViewDefinition(tile, "create" + entity.getName(), "Create " + StringUtils.uncamelCase(entity.getName()),
-                        StringUtils.uncamelCase(entity.getName()), "Create a new " + StringUtils.uncamelCase(entity.getName()),
-                        "/WEB-INF/views" + targetDir + entity.getName() + "/create" + entity.getName() + ".jsp", definitions);
+            String tile = targetDir.equals("/") ? "standard" : targetDir.substring(1, targetDir.length()-1);
 
-                // Generate edit
+            // Add index page(s)
 
-                writeMetawidget(context, this.entityMetawidget, this.editTemplateEntityMetawidgetIndent, "metawidget");
+            if (!targetDir.equals("/"))
+            {
+                addViewDefinition("standard", "/index", "Weclome to Forge", "Welcome to Forge", "",
+                        "/WEB-INF/views/index.jsp", definitions);
+            }
 
-                result.add(ScaffoldUtil.createOrOverwrite(this.prompt, web.getWebResource("WEB-INF/views" + targetDir + entity.getName()
-                        + "/edit" + entity.getName() + ".jsp"), this.editTemplate.render(context), overwrite));
+            addViewDefinition(tile, targetDir + "index", "Welcome to Forge", "Welcome to Forge", "",
+                    "/WEB-INF/views" + targetDir + "index.jsp", definitions);
 
-                addViewDefinition(tile, "edit" + entity.getName(), "Edit " + StringUtils.uncamelCase(entity.getName()),
-                        StringUtils.uncamelCase(entity.getName()), "Edit an existing " + StringUtils.uncamelCase(entity.getName()),
-                        "/WEB-INF/views" + targetDir + entity.getName() + "/edit" + entity.getName() + ".jsp", definitions);
+            // Add error page
 
-                // Generate search
+            addViewDefinition("standard", "/error", "Server Error", "Oops!", "That's going to leave a mark!",
+                    "/WEB-INF/views/error.jsp", definitions);
 
-                this.searchMetawidget.setValue(ccEntity);
-                this.searchMetawidget.setPath(entity.getQualifiedName());
-                this.searchMetawidget.setReadOnly(false);
+            // Analyse the relationships of every entity in one pass, before any are rendered
 
-                this.headerMetawidget.setValue(StaticJspUtils.wrapExpression(entity.getName()));
-                this.headerMetawidget.setPath(entity.getQualifiedName());
-                this.headerMetawidget.setReadOnly(true);
+            EntityGraph.forProject(this.project).update(entities);
 
-                this.resultMetawidget.setValue(StaticJspUtils.wrapExpression(entity.getName()));
-                this.resultMetawidget.setPath(entity.getQualifiedName());
-                this.resultMetawidget.setReadOnly(true);
+            // Skip any entities whose inputs have not changed since they were last scaffolded
 
-                writeMetawidget(context, this.searchMetawidget, this.searchTemplateMetawidgetIndent, "metawidget");
-                writeMetawidget(context, this.headerMetawidget, this.headerMetawidgetIndent, "headerMetawidget");
-                writeMetawidget(context, this.resultMetawidget, this.resultMetawidgetIndent, "resultMetawidget");
+            ScaffoldManifest manifest = null;
+            Map<String, String> digests = CollectionUtils.newLinkedHashMap();
 
-                result.add(ScaffoldUtil.createOrOverwrite(this.prompt, web.getWebResource("WEB-INF/views" + targetDir + entity.getName()
-                        + "/" + entityPlural.toLowerCase() + ".jsp"), this.searchTemplate.render(context), overwrite));
+            if (isIncremental())
+            {
+                manifest = new ScaffoldManifest(this.project);
+                entities = findChangedEntities(entities, targetDir, manifest, digests);
+            }
 
-                addViewDefinition(tile, entityPlural.toLowerCase(), "Search " + StringUtils.uncamelCase(entity.getName()) + " entities",
-                        StringUtils.uncamelCase(entity.getName()), "Search " + StringUtils.uncamelCase(entity.getName()) + " entities",
-                        "/WEB-INF/views" + targetDir + entity.getName() + "/" + entityPlural.toLowerCase()+ ".jsp", definitions);
+            // Generate the per-entity resources, collecting the converters needed by N-to-many relationships
 
-                // Generate view
+            Map<String, String> converters = CollectionUtils.newLinkedHashMap();
+            int threads = getGenerationThreads();
 
-                this.entityMetawidget.setReadOnly(true);
-                writeMetawidget(context, this.entityMetawidget, this.viewTemplateMetawidgetIndent, "metawidget");
-    
-                result.add(ScaffoldUtil.createOrOverwrite(this.prompt, web.getWebResource("WEB-INF/views" + targetDir + entity.getName()
-                        + "/view" + entity.getName() + ".jsp"), this.viewTemplate.render(context), overwrite));
+            if (threads > 1 && entities.size() > 1)
+            {
+                result.addAll(generateEntitiesInParallel(entities, mvcPackage, targetDir, tile, definitions, converters, threads,
+                        overwrite));
+            }
+            else
+            {
+                for (JavaClass entity : entities)
+                {
+                    try
+                    {
+                        GeneratedEntity generated = renderEntity(entity, this.metawidgets, mvcPackage, targetDir);
+                        result.addAll(writeEntity(generated, tile, definitions, overwrite));
+                        converters.putAll(generated.getConverters());
+                    }
+                    catch (Exception e)
+                    {
+                        throw new RuntimeException("Error generating Spring scaffolding: " + entity.getName(), e);
+                    }
+                }
+            }
 
-                addViewDefinition(tile, "view" + entity.getName(), "View " + StringUtils.uncamelCase(entity.getName()),
-                        StringUtils.uncamelCase(entity.getName()), "View existing " + StringUtils.uncamelCase(entity.getName()),
-                        "/WEB-INF/views" + targetDir + entity.getName() + "/view" + entity.getName() + ".jsp", definitions);
+            try
+            {
+                // Write the shared resources once, now that every entity has been processed
 
-                String viewsXML = XMLParser.toXMLString(definitions);
-                viewsXML = viewsXML.substring(0, 55) + "\n<!DOCTYPE tiles-definitions PUBLIC \"-//Apache Software Foundation//DTD Tiles " +
-                		"Configuration 2.0//EN\" \"http://tiles.apache.org/dtds/tiles-config_2_0.dtd\">\n" + viewsXML.substring(55);
+                result.add(writeTilesDefinitions(definitions, "WEB-INF/views/views.xml"));
 
-                result.add(web.createWebResource(viewsXML, "WEB-INF/views/views.xml"));
+                if (!converters.isEmpty())
+                {
+                    for (Map.Entry<String, String> converter : converters.entrySet())
+                    {
+                        createConverter(converter.getKey(), converter.getValue());
+                    }
+
+                    Map<Object, Object> context = CollectionUtils.newHashMap();
+                    context.put("nToMany", new ArrayList<String>(converters.keySet()));
+                    addConverters(context);
+                    addConversionService();
+                }
 
-                this.qbeMetawidget.setPath(entity.getQualifiedName());
-                StringWriter writer = new StringWriter();
-                this.qbeMetawidget.write(writer, backingBeanTemplateQbeMetawidgetIndent);
+                // Create a Spring MVC controller for the root of the servlet, using IndexControllerTemplate.jv
 
-                context.put("qbeMetawidget", writer.toString().trim());
-                context.put("qbeMetawidgetImports",
-                        CollectionUtils.toString(this.qbeMetawidget.getImports(), ";\r\n", true, false));
+                Map<Object, Object> context = CollectionUtils.newHashMap();
+                context.put("mvcPackage", mvcPackage);
+                context.put("targetDir", targetDir);
+                context.put("repoPackage", meta.getTopLevelPackage() + ".repo");
 
-                JavaInterface daoInterface = JavaParser.parse(JavaInterface.class, this.daoInterfaceTemplate.render(context));
-                JavaClass daoImplementation = JavaParser.parse(JavaClass.class, this.daoImplementationTemplate.render(context));
-    
-                // Save the created interface and class implementation, so they can be referenced by the controller.
+                // If any entity is kept in the second-level cache, report the hit rates of its cache regions
 
-                java.saveJavaSource(daoInterface);
-                result.add(ScaffoldUtil.createOrOverwrite(this.prompt, java.getJavaResource(daoInterface),
-                        daoInterface.toString(), overwrite));
-    
-                java.saveJavaSource(daoImplementation);
-                result.add(ScaffoldUtil.createOrOverwrite(this.prompt, java.getJavaResource(daoImplementation),
-                        daoImplementation.toString(), overwrite));
-    
-                // Create a Spring MVC controller for the passed entity, using SpringControllerTemplate.jv
-    
-                JavaClass entityController = JavaParser.parse(JavaClass.class, this.springControllerTemplate.render(context));
-                java.saveJavaSource(entityController);
-                result.add(ScaffoldUtil.createOrOverwrite(this.prompt, java.getJavaResource(entityController),
-                        entityController.toString(), overwrite));
+                boolean secondLevelCache = !getCachedEntities().isEmpty();
+                context.put("secondLevelCache", secondLevelCache);
 
-                // Create a Spring MVC controller for the root of the servlet, using IndexControllerTemplate.jv
+                if (secondLevelCache)
+                {
+                    result.add(writeJavaSource(meta.getTopLevelPackage() + ".repo.CacheStatistics",
+                            this.cacheStatisticsTemplate.render(context), overwrite));
+                }
 
-                JavaClass indexController = JavaParser.parse(JavaClass.class, this.indexControllerTemplate.render(context));
-                java.saveJavaSource(indexController);
-                result.add(ScaffoldUtil.createOrOverwrite(this.prompt, java.getJavaResource(indexController),
-                        indexController.toString(), overwrite));
+                result.add(writeJavaSource(mvcPackage + ".IndexController", this.indexControllerTemplate.render(context),
+                        overwrite));
 
                 // If we have not just generated an IndexController for the '/' directory, create one.
 
@@ -528,28 +686,76 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
                     context.put("mvcPackage", meta.getTopLevelPackage() + ".mvc.root");
                     context.put("targetDir", "/");
 
-                    JavaClass rootIndexController = JavaParser.parse(JavaClass.class, this.indexControllerTemplate.render(context));
-                    java.saveJavaSource(rootIndexController);
-                    result.add(ScaffoldUtil.createOrOverwrite(this.prompt, java.getJavaResource(rootIndexController),
-                            rootIndexController.toString(), overwrite));
+                    result.add(writeJavaSource(meta.getTopLevelPackage() + ".mvc.root.IndexController",
+                            this.indexControllerTemplate.render(context), overwrite));
+                }
+
+                // The page templates load typeahead.js only while typeahead lookups are on, so make sure it is there
+
+                if (isTypeaheadLookups())
+                {
+                    this.output.createOrOverwrite(web.getWebResource("/resources/typeahead.js"),
+                            getClass().getResourceAsStream("/scaffold/spring/typeahead.js"), overwrite);
+                }
+
+                // Wait for every queued write, so that the navigation finds the views of every entity just generated
+
+                this.output.finish();
 
                 // Generate navigation, for both "/" and for targetDir
 
+                if (!targetDir.equals("/"))
+                {
                     result.add(generateNavigation("/", overwrite));
                 }
 
                 result.add(generateNavigation(targetDir, overwrite));
+
+                // Only record the digests once the whole run has succeeded
+
+                if (manifest != null && !digests.isEmpty())
+                {
+                    for (Map.Entry<String, String> digest : digests.entrySet())
+                    {
+                        manifest.record(digest.getKey(), digest.getValue());
+                    }
+
+                    manifest.save();
+                }
+
+                if (isResident())
+                {
+                    ResidentScaffoldCache.forProject(this.project).save(this.configReader.getInspectionResultCache(),
+                            JavaSourceCache.forProject(this.project), getGeneratorDigest());
+                }
+
+                reportOutput();
             }
             catch (Exception e)
             {
-                throw new RuntimeException("Error generating Spring scaffolding: " + entity.getName(), e);
+                throw new RuntimeException("Error generating Spring scaffolding.", e);
             }
         }
         finally
         {
-            // Restore the original ContextClassLoader
+            // Restore the original ContextClassLoader, release the inspection results (unless resident), and let any
+            // queued writes drain (if the run failed, its error takes precedence over theirs)
 
             Thread.currentThread().setContextClassLoader(oldClassLoader);
+
+            try
+            {
+                if (!isResident())
+                {
+                    this.configReader.getInspectionResultCache().clear();
+                }
+
+                this.output.close();
+            }
+            finally
+            {
+                runLock.unlock();
+            }
         }
 
         return result;
@@ -590,33 +796,39 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
 
         if (!targetDir.equals("/"))
         {
-            result.add(ScaffoldUtil.createOrOverwrite(this.prompt, web.getWebResource("WEB-INF/views/index.jsp"),
+            result.add(this.output.createOrOverwrite(web.getWebResource("WEB-INF/views/index.jsp"),
                     this.indexTemplate.render(context), overwrite));
         }
 
         // Basic pages
 
-        result.add(ScaffoldUtil.createOrOverwrite(this.prompt, web.getWebResource("WEB-INF/views" + targetDir + "index.jsp"),
+        result.add(this.output.createOrOverwrite(web.getWebResource("WEB-INF/views" + targetDir + "index.jsp"),
                 this.indexTemplate.render(context), overwrite));
 
-        result.add(ScaffoldUtil.createOrOverwrite(this.prompt, web.getWebResource("WEB-INF/views/error.jsp"),
+        result.add(this.output.createOrOverwrite(web.getWebResource("WEB-INF/views/error.jsp"),
                 this.errorTemplate.render(context), overwrite));
 
         // Static resources - only add them if they are not already present.
 
-        ScaffoldUtil.createOrOverwrite(this.prompt, web.getWebResource("/resources/bootstrap.css"),
+        this.output.createOrOverwrite(web.getWebResource("/resources/bootstrap.css"),
                 getClass().getResourceAsStream("/scaffold/spring/bootstrap.css"), overwrite);
-        ScaffoldUtil.createOrOverwrite(this.prompt, web.getWebResource("/resources/false.png"),
+        this.output.createOrOverwrite(web.getWebResource("/resources/false.png"),
                 getClass().getResourceAsStream("/scaffold/spring/false.png"), overwrite);
-        ScaffoldUtil.createOrOverwrite(this.prompt, web.getWebResource("/resources/forge-logo.png"),
+        this.output.createOrOverwrite(web.getWebResource("/resources/forge-logo.png"),
                 getClass().getResourceAsStream("/scaffold/spring/forge-logo.png"), overwrite);
-        ScaffoldUtil.createOrOverwrite(this.prompt, web.getWebResource("/resources/forge-style.css"),
+        this.output.createOrOverwrite(web.getWebResource("/resources/forge-style.css"),
                 getClass().getResourceAsStream("/scaffold/spring/forge-style.css"), overwrite);
-        ScaffoldUtil.createOrOverwrite(this.prompt, web.getWebResource("/resources/search.png"),
+        this.output.createOrOverwrite(web.getWebResource("/resources/search.png"),
                 getClass().getResourceAsStream("/scaffold/spring/search.png"), overwrite);
-        ScaffoldUtil.createOrOverwrite(this.prompt, web.getWebResource("/resources/true.png"), 
+        this.output.createOrOverwrite(web.getWebResource("/resources/true.png"), 
                 getClass().getResourceAsStream("/scaffold/spring/true.png"), overwrite);
 
+        if (isTypeaheadLookups())
+        {
+            this.output.createOrOverwrite(web.getWebResource("/resources/typeahead.js"),
+                    getClass().getResourceAsStream("/scaffold/spring/typeahead.js"), overwrite);
+        }
+
        return result;
     }
 
@@ -701,114 +913,689 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
             addLayoutDefinition(name, "/WEB-INF/layouts/" + name + "Template.jsp", definitions);
         }
 
-        String layoutsXML = XMLParser.toXMLString(definitions);
-        layoutsXML = layoutsXML.substring(0, 55) + "\n<!DOCTYPE tiles-definitions PUBLIC \"-//Apache Software Foundation//DTD Tiles " +
-        		"Configuration 2.0//EN\" \"http://tiles.apache.org/dtds/tiles-config_2_0.dtd\">\n" + layoutsXML.substring(55);
-
-        return web.createWebResource(layoutsXML, "/WEB-INF/layouts/layouts.xml"); 
+        return writeTilesDefinitions(definitions, "/WEB-INF/layouts/layouts.xml");
     }
 
-    protected void loadTemplates()
+    /**
+     * Renders the JSPs, DAO and controller of a single entity, without writing them.
+     * <p>
+     * Entities may be rendered concurrently provided each thread uses its own <code>ScaffoldMetawidgets</code>, which
+     * are mutable. Everything else this method uses is shared between the rendering threads, and is thread-safe on the
+     * following terms:
+     * <ul>
+     * <li>the project's facets (<code>project.getFacet</code>) are only read, so must not be installed or removed
+     * while rendering;</li>
+     * <li>the project's <code>EntityGraph</code> and the process-wide <code>EntityDescriptor</code>s are concurrent
+     * caches, and the graph's nodes and the descriptors are immutable once built;</li>
+     * <li>the compiled templates from <code>ScaffoldTemplates</code> are shared, and are safe to render concurrently
+     * because each render is given its own context;</li>
+     * <li>the project's <code>JavaSourceCache</code>, read by the Metawidgets' Inspectors, shares parsed
+     * <code>JavaSource</code>s (including the given <code>entity</code>) between threads, so they must be treated as
+     * read-only;</li>
+     * <li>the run's <code>InspectionResultCache</code>, also reached through the Inspectors, is a concurrent map, and
+     * must only be cleared between runs (under the project's run lock), never while rendering.</li>
+     * </ul>
+     */
+
+    protected GeneratedEntity renderEntity(JavaClass entity, ScaffoldMetawidgets metawidgets, String mvcPackage,
+                    String targetDir) throws IOException
     {
+        GeneratedEntity generated = new GeneratedEntity(entity);
+        MetadataFacet meta = project.getFacet(MetadataFacet.class);
 
-        if (this.applicationContextTemplate == null)
-        {
-            this.applicationContextTemplate = compiler.compile(APPLICATION_CONTEXT_TEMPLATE);
-        }
+        // Set context for Java and JSP generation
 
-        if (this.mvcContextTemplate == null)
-        {
-            this.mvcContextTemplate = compiler.compile(MVC_CONTEXT_TEMPLATE);
-        }
+        Map<Object, Object> context = CollectionUtils.newHashMap();
+        context.put("entity", entity);
+        EntityDescriptor descriptor = EntityDescriptor.forName(entity.getName());
+        context.put("entityDescriptor", descriptor);
+        String ccEntity = descriptor.getCcName();
+        context.put("ccEntity", ccEntity);
 
-        if (this.webXMLTemplate == null)
-        {
-            this.webXMLTemplate = compiler.compile(WEB_XML_TEMPLATE);
-        }
+        context.put("topLevelPackage", meta.getTopLevelPackage());
+        context.put("mvcPackage", mvcPackage);
 
-        // Compile the DAO interface Java template.
-        
-        if (this.daoInterfaceTemplate == null)
-        {
-            this.daoInterfaceTemplate = compiler.compile(DAO_INTERFACE_TEMPLATE);           
-        }
-        
-        // Compile the DAO interface implementation Java template.
-        
-        if (this.daoImplementationTemplate == null)
-        {
-            this.daoImplementationTemplate = compiler.compile(DAO_IMPLEMENTATION_TEMPLATE);
-        }
+        findEntityRelationships(entity, context);
 
-        // Compile the Spring MVC index controller Java template.
+        @SuppressWarnings("unchecked")
+        Map<String, String> converters = (Map<String, String>) context.get("converters");
+        generated.addConverters(converters);
 
-        if (this.indexControllerTemplate == null)
-        {
-            this.indexControllerTemplate = compiler.compile(INDEX_CONTROLLER_TEMPLATE);
-        }
+        context.put("targetDir", targetDir);
+        context.put("entityName", descriptor.getLabel());
+        String entityPlural = descriptor.getPlural();
+        context.put("entityPlural", entityPlural);
+        context.put("entityPluralName", descriptor.getPluralLabel());
+        String label = descriptor.getLabel();
 
-        // Compile the Spring MVC entity controller Java template.
-        
-        if (this.springControllerTemplate == null)
-        {
-            this.springControllerTemplate = compiler.compile(SPRING_CONTROLLER_TEMPLATE);
-        }
+        findPaginationKey(entity, context);
+        findCountStrategy(entity, context);
+        findLookupLabel(entity, context);
+        context.put("cacheable", isSecondLevelCache(entity));
 
-        if (this.conversionServiceTemplate == null)
-        {
-            this.conversionServiceTemplate = compiler.compile(CONVERSION_SERVICE_TEMPLATE);
-        }
+        // Prepare entity metawidget
 
-        if (this.entityConverterTemplate == null)
-        {
-            this.entityConverterTemplate = compiler.compile(ENTITY_CONVERTER_TEMPLATE);
-        }
+        StaticSpringMetawidget entityMetawidget = metawidgets.getEntityMetawidget();
+        entityMetawidget.setValue(ccEntity);
+        entityMetawidget.setPath(entity.getQualifiedName());
+        entityMetawidget.setReadOnly(false);
 
-        if (this.searchTemplate == null)
-        {
-            this.searchTemplate = compiler.compile(SEARCH_TEMPLATE);
-            String template = Streams.toString(this.searchTemplate.getSourceTemplateResource().getInputStream());
-            this.searchTemplateMetawidgetIndent = parseIndent(template, "@{metawidet}");
-            this.headerMetawidgetIndent = parseIndent(template, "@{headerMetawidget}");
-            this.resultMetawidgetIndent = parseIndent(template, "@{resultMetawidget}");
-        }
+        // Record which relationship model attributes each page references, as it is generated
 
-        if (this.viewTemplate == null)
-        {
-            this.viewTemplate = compiler.compile(VIEW_TEMPLATE);
-            String template = Streams.toString(this.viewTemplate.getSourceTemplateResource().getInputStream());
-            this.viewTemplateMetawidgetIndent = parseIndent(template, "@{metawidget}");
-        }
+        @SuppressWarnings("unchecked")
+        ModelPopulationPlan plan = new ModelPopulationPlan((List<String>) context.get("entityNames"));
 
-        if (this.editTemplate == null)
-        {
-            this.editTemplate = compiler.compile(EDIT_TEMPLATE);
-            String template = Streams.toString(this.editTemplate.getSourceTemplateResource().getInputStream());
-            this.editTemplateEntityMetawidgetIndent = parseIndent(template, "@{metawidget}");
-        }
+        // Generate create
 
-        if (this.createTemplate == null)
-        {
-            this.createTemplate = compiler.compile(CREATE_TEMPLATE);
-            String template = Streams.toString(this.createTemplate.getSourceTemplateResource().getInputStream());
-            this.createTemplateEntityMetawidgetIndent = parseIndent(template, "@{metawidget}");
-        }
+        writeMetawidget(context, entityMetawidget, this.createTemplateEntityMetawidgetIndent, "metawidget");
 
-        if (this.navigationTemplate == null)
-        {
-            this.navigationTemplate = compiler.compile(NAVIGATION_TEMPLATE);
-            String template = Streams.toString(this.navigationTemplate.getSourceTemplateResource().getInputStream());
-            this.navigationTemplateIndent = parseIndent(template, "@{navigation}");
-        }
+        String page = this.createTemplate.render(context);
+        plan.record(ModelPopulationPlan.CREATE, page);
+        generated.addWebResource("WEB-INF/views" + targetDir + entity.getName() + "/create" + entity.getName() + ".jsp",
+                page);
 
-        if (this.errorTemplate == null)
-        {
-            this.errorTemplate = compiler.compile(ERROR_TEMPLATE);
-        }
+        generated.addViewDefinition("create" + entity.getName(), "Create " + label, label,
+                "Create a new " + label,
+                "/WEB-INF/views" + targetDir + entity.getName() + "/create" + entity.getName() + ".jsp");
 
-        if (this.indexTemplate == null)
-        {
-            this.indexTemplate = compiler.compile(INDEX_TEMPLATE);
+        // Generate edit
+
+        writeMetawidget(context, entityMetawidget, this.editTemplateEntityMetawidgetIndent, "metawidget");
+
+        page = this.editTemplate.render(context);
+        plan.record(ModelPopulationPlan.EDIT, page);
+        generated.addWebResource("WEB-INF/views" + targetDir + entity.getName() + "/edit" + entity.getName() + ".jsp",
+                page);
+
+        generated.addViewDefinition("edit" + entity.getName(), "Edit " + label, label,
+                "Edit an existing " + label,
+                "/WEB-INF/views" + targetDir + entity.getName() + "/edit" + entity.getName() + ".jsp");
+
+        // Generate search
+
+        StaticSpringMetawidget searchMetawidget = metawidgets.getSearchMetawidget();
+        searchMetawidget.setValue(ccEntity);
+        searchMetawidget.setPath(entity.getQualifiedName());
+        searchMetawidget.setReadOnly(false);
+
+        StaticJspMetawidget headerMetawidget = metawidgets.getHeaderMetawidget();
+        headerMetawidget.setValue(StaticJspUtils.wrapExpression(entity.getName()));
+        headerMetawidget.setPath(entity.getQualifiedName());
+        headerMetawidget.setReadOnly(true);
+
+        StaticJspMetawidget resultMetawidget = metawidgets.getResultMetawidget();
+        resultMetawidget.setValue(StaticJspUtils.wrapExpression(entity.getName()));
+        resultMetawidget.setPath(entity.getQualifiedName());
+        resultMetawidget.setReadOnly(true);
+
+        writeMetawidget(context, searchMetawidget, this.searchTemplateMetawidgetIndent, "metawidget");
+        writeMetawidget(context, headerMetawidget, this.headerMetawidgetIndent, "headerMetawidget");
+        writeMetawidget(context, resultMetawidget, this.resultMetawidgetIndent, "resultMetawidget");
+
+        page = this.searchTemplate.render(context);
+        plan.record(ModelPopulationPlan.SEARCH, page);
+        generated.addWebResource("WEB-INF/views" + targetDir + entity.getName() + "/" + descriptor.getControllerPath() + ".jsp",
+                page);
+
+        generated.addViewDefinition(descriptor.getControllerPath(), "Search " + label + " entities", label,
+                "Search " + label + " entities",
+                "/WEB-INF/views" + targetDir + entity.getName() + "/" + descriptor.getControllerPath() + ".jsp");
+
+        // Generate view
+
+        entityMetawidget.setReadOnly(true);
+        writeMetawidget(context, entityMetawidget, this.viewTemplateMetawidgetIndent, "metawidget");
+
+        page = this.viewTemplate.render(context);
+        plan.record(ModelPopulationPlan.VIEW, page);
+        generated.addWebResource("WEB-INF/views" + targetDir + entity.getName() + "/view" + entity.getName() + ".jsp",
+                page);
+
+        generated.addViewDefinition("view" + entity.getName(), "View " + label, label,
+                "View existing " + label,
+                "/WEB-INF/views" + targetDir + entity.getName() + "/view" + entity.getName() + ".jsp");
+
+        StaticJavaMetawidget qbeMetawidget = metawidgets.getQbeMetawidget();
+        qbeMetawidget.setPath(entity.getQualifiedName());
+        StringWriter writer = new StringWriter();
+        qbeMetawidget.write(writer, backingBeanTemplateQbeMetawidgetIndent);
+
+        context.put("qbeMetawidget", writer.toString().trim());
+        context.put("qbeMetawidgetImports",
+                CollectionUtils.toString(qbeMetawidget.getImports(), ";\r\n", true, false));
+
+        // Save the created interface and class implementation, so they can be referenced by the controller.  The
+        // class names are fixed by the templates, so there is no need to parse them
+
+        String repoPackage = meta.getTopLevelPackage() + ".repo.";
+        generated.addJavaSource(repoPackage + descriptor.getDaoName(), this.daoInterfaceTemplate.render(context));
+        generated.addJavaSource(repoPackage + descriptor.getDaoImplementationName(), this.daoImplementationTemplate.render(context));
+
+        // Create a Spring MVC controller for the passed entity, using SpringControllerTemplate.jv. It loads only the
+        // model attributes each page references
+
+        plan.addTo(context);
+
+        generated.addJavaSource(mvcPackage + "." + descriptor.getControllerName(), this.springControllerTemplate.render(context));
+
+        return generated;
+    }
+
+    /**
+     * Writes a rendered entity, adding its view definitions to the given (shared) <code>definitions</code>.
+     * <p>
+     * This method may prompt the user, so must only be called from the thread that owns the scaffolding run.
+     */
+
+    protected List<Resource<?>> writeEntity(GeneratedEntity generated, String tile, Node definitions, boolean overwrite)
+    {
+        List<Resource<?>> result = new ArrayList<Resource<?>>();
+
+        WebResourceFacet web = project.getFacet(WebResourceFacet.class);
+
+        for (Map.Entry<String, String> webResource : generated.getWebResources().entrySet())
+        {
+            result.add(this.output.createOrOverwrite(web.getWebResource(webResource.getKey()),
+                    webResource.getValue(), overwrite));
+        }
+
+        for (String[] view : generated.getViewDefinitions())
+        {
+            addViewDefinition(tile, view[0], view[1], view[2], view[3], view[4], definitions);
+        }
+
+        for (Map.Entry<String, String> javaSource : generated.getJavaSources().entrySet())
+        {
+            result.add(writeJavaSource(javaSource.getKey(), javaSource.getValue(), overwrite));
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes a rendered Java source to the given class, formatting it as <code>JavaSourceFacet.saveJavaSource</code>
+     * would.
+     * <p>
+     * Sources are written exactly once, and are never parsed: only sources that must be edited (such as the
+     * ConversionService) need to go through <code>JavaParser</code>.
+     */
+
+    protected Resource<?> writeJavaSource(String qualifiedName, String contents, boolean overwrite)
+    {
+        JavaSourceFacet java = project.getFacet(JavaSourceFacet.class);
+
+        try
+        {
+            return this.output.createOrOverwrite(java.getJavaResource(qualifiedName), Formatter.format(contents),
+                    overwrite);
+        }
+        catch (FileNotFoundException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Renders the given entities on a pool of <code>threads</code> threads, each with its own
+     * <code>ScaffoldMetawidgets</code>, then writes them on the calling thread in the order given.
+     * <p>
+     * Writing starts as soon as the first entity has been rendered, so I/O overlaps with the remaining rendering.
+     */
+
+    protected List<Resource<?>> generateEntitiesInParallel(Collection<JavaClass> entities, final String mvcPackage,
+                    final String targetDir, String tile, Node definitions, Map<String, String> converters, int threads,
+                    boolean overwrite)
+    {
+        List<Resource<?>> result = new ArrayList<Resource<?>>();
+
+        // A pool of Metawidgets, so that each is confined to one thread at a time
+
+        final BlockingQueue<ScaffoldMetawidgets> pool = new LinkedBlockingQueue<ScaffoldMetawidgets>();
+        pool.add(this.metawidgets);
+
+        for (int loop = 1; loop < threads; loop++)
+        {
+            pool.add(new ScaffoldMetawidgets(this.configReader));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "spring-scaffold");
+                thread.setContextClassLoader(SpringScaffold.class.getClassLoader());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try
+        {
+            List<JavaClass> submitted = new ArrayList<JavaClass>();
+            List<Future<GeneratedEntity>> futures = new ArrayList<Future<GeneratedEntity>>();
+
+            for (final JavaClass entity : entities)
+            {
+                submitted.add(entity);
+                futures.add(executor.submit(new Callable<GeneratedEntity>()
+                {
+                    @Override
+                    public GeneratedEntity call() throws Exception
+                    {
+                        ScaffoldMetawidgets metawidgets = pool.take();
+
+                        try
+                        {
+                            return renderEntity(entity, metawidgets, mvcPackage, targetDir);
+                        }
+                        finally
+                        {
+                            pool.add(metawidgets);
+                        }
+                    }
+                }));
+            }
+
+            for (int loop = 0; loop < futures.size(); loop++)
+            {
+                try
+                {
+                    GeneratedEntity generated = futures.get(loop).get();
+                    result.addAll(writeEntity(generated, tile, definitions, overwrite));
+                    converters.putAll(generated.getConverters());
+                }
+                catch (ExecutionException e)
+                {
+                    throw new RuntimeException("Error generating Spring scaffolding: " + submitted.get(loop).getName(), e.getCause());
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted generating Spring scaffolding: " + submitted.get(loop).getName(), e);
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns those of the given entities whose digest differs from the one recorded in the manifest, or whose views
+     * have since been deleted. The new digest of each returned entity is put into <code>digests</code>, keyed by
+     * manifest key.
+     */
+
+    protected List<JavaClass> findChangedEntities(Collection<JavaClass> entities, String targetDir, ScaffoldManifest manifest,
+                Map<String, String> digests)
+    {
+        WebResourceFacet web = project.getFacet(WebResourceFacet.class);
+        List<JavaClass> changed = new ArrayList<JavaClass>();
+
+        for (JavaClass entity : entities)
+        {
+            String key = targetDir + entity.getQualifiedName();
+            String digest = manifest.digest(entity, targetDir, getGeneratorDigest(entity));
+
+            if (manifest.isUnchanged(key, digest) && web.getWebResource("WEB-INF/views" + targetDir + entity.getName()).exists())
+            {
+                continue;
+            }
+
+            changed.add(entity);
+            digests.put(key, digest);
+        }
+
+        return changed;
+    }
+
+    /**
+     * Reports how many files the run wrote, and how many it left untouched because they were unchanged.
+     */
+
+    protected void reportOutput()
+    {
+        if (this.prompt instanceof ShellPrintWriter)
+        {
+            ShellMessages.info((ShellPrintWriter) this.prompt, this.output.toString());
+        }
+    }
+
+    /**
+     * Clears the shared inspection results or, in resident mode, keeps those whose sources are unchanged.
+     */
+
+    protected void prepareInspectionResults()
+    {
+        if (isResident())
+        {
+            ResidentScaffoldCache.forProject(this.project).validate(this.configReader.getInspectionResultCache(),
+                    getGeneratorDigest());
+        }
+        else
+        {
+            this.configReader.getInspectionResultCache().clear();
+        }
+    }
+
+    /**
+     * Digest of the scaffold's templates, Metawidget configs and generator settings, computed once per combination of
+     * settings.
+     */
+
+    protected String getGeneratorDigest()
+    {
+        List<String> settings = getGeneratorSettings();
+
+        if (this.generatorDigest == null || !settings.equals(this.generatorSettings))
+        {
+            this.generatorDigest = ScaffoldManifest.generatorDigest(SpringScaffold.class.getClassLoader(),
+                    GENERATOR_RESOURCES, settings.toArray(new String[settings.size()]));
+            this.generatorSettings = settings;
+        }
+
+        return this.generatorDigest;
+    }
+
+    /**
+     * Digest of the scaffold's generator, including the settings that may differ per entity.
+     */
+
+    protected String getGeneratorDigest(JavaClass entity)
+    {
+        CountStrategy strategy = getCountStrategy(entity);
+        StringBuilder digest = new StringBuilder(getGeneratorDigest());
+        digest.append(":").append(COUNT_STRATEGY).append("=").append(strategy);
+
+        // Only the strategies that use them are affected by the count settings
+
+        if (strategy == CountStrategy.CACHED)
+        {
+            digest.append(":").append(COUNT_CACHE_TTL).append("=").append(getCountCacheTtl());
+        }
+        else if (strategy == CountStrategy.ESTIMATED)
+        {
+            digest.append(":").append(COUNT_ESTIMATE_QUERY).append("=").append(getCountEstimateQuery());
+        }
+
+        digest.append(":").append(SECOND_LEVEL_CACHE).append("=").append(isSecondLevelCache(entity));
+
+        return digest.toString();
+    }
+
+    /**
+     * The settings that change what is generated, so that changing one rescaffolds every entity.
+     */
+
+    protected List<String> getGeneratorSettings()
+    {
+        List<String> settings = new ArrayList<String>();
+        settings.add(getClass().getName());
+        settings.add(KEYSET_PAGINATION + "=" + isKeysetPagination());
+        settings.add(TYPEAHEAD_LOOKUPS + "=" + isTypeaheadLookups());
+
+        return settings;
+    }
+
+    /**
+     * Whether to keep caches warm between runs, read from the Forge configuration.
+     */
+
+    protected boolean isResident()
+    {
+        if (this.resident != null)
+        {
+            return this.resident;
+        }
+
+        return (this.config == null) ? false : this.config.getBoolean(RESIDENT, false);
+    }
+
+    /**
+     * Whether to generate keyset, rather than offset, pagination, read from the Forge configuration.
+     */
+
+    protected boolean isKeysetPagination()
+    {
+        return (this.config == null) ? false : this.config.getBoolean(KEYSET_PAGINATION, false);
+    }
+
+    /**
+     * Whether to generate typeahead lookups for relationships, read from the Forge configuration.
+     */
+
+    protected boolean isTypeaheadLookups()
+    {
+        return (this.config == null) ? false : this.config.getBoolean(TYPEAHEAD_LOOKUPS, false);
+    }
+
+    /**
+     * How the given entity's search page counts its results, read from the Forge configuration.
+     */
+
+    protected CountStrategy getCountStrategy(JavaClass entity)
+    {
+        if (this.config == null)
+        {
+            return CountStrategy.EXACT;
+        }
+
+        String strategy = this.config.getString(COUNT_STRATEGY, CountStrategy.EXACT.name());
+        strategy = this.config.getString(COUNT_STRATEGY + "_" + entity.getQualifiedName(), strategy);
+
+        return CountStrategy.forName(strategy);
+    }
+
+    /**
+     * Seconds to cache counts for, read from the Forge configuration.
+     */
+
+    protected int getCountCacheTtl()
+    {
+        return (this.config == null) ? 60 : this.config.getInt(COUNT_CACHE_TTL, 60);
+    }
+
+    /**
+     * SQL to estimate a table's row count with, read from the Forge configuration.
+     */
+
+    protected String getCountEstimateQuery()
+    {
+        return (this.config == null) ? DEFAULT_COUNT_ESTIMATE_QUERY : this.config.getString(COUNT_ESTIMATE_QUERY,
+                DEFAULT_COUNT_ESTIMATE_QUERY);
+    }
+
+    /**
+     * Qualified names of the entities kept in the second-level cache, read from the Forge configuration.
+     */
+
+    protected List<String> getCachedEntities()
+    {
+        List<String> cached = new ArrayList<String>();
+        String names = (this.config == null) ? null : this.config.getString(SECOND_LEVEL_CACHE, null);
+
+        if (names != null)
+        {
+            for (String name : names.split(","))
+            {
+                if (!name.trim().isEmpty())
+                {
+                    cached.add(name.trim());
+                }
+            }
+        }
+
+        return cached;
+    }
+
+    /**
+     * Whether the given entity is kept in the second-level cache, read from the Forge configuration.
+     */
+
+    protected boolean isSecondLevelCache(JavaClass entity)
+    {
+        return getCachedEntities().contains(entity.getQualifiedName());
+    }
+
+    /**
+     * Whether to skip unchanged entities, read from the Forge configuration.
+     */
+
+    protected boolean isIncremental()
+    {
+        if (this.incremental != null)
+        {
+            return this.incremental;
+        }
+
+        return (this.config == null) ? false : this.config.getBoolean(INCREMENTAL, false);
+    }
+
+    /**
+     * Number of threads to render entities with, read from the Forge configuration.
+     */
+
+    protected int getGenerationThreads()
+    {
+        int threads = (this.config == null) ? 1 : this.config.getInt(GENERATION_THREADS, 1);
+
+        if (threads <= 0)
+        {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+
+        return threads;
+    }
+
+    /**
+     * Number of files to queue for the background writer, read from the Forge configuration.
+     */
+
+    protected int getWriteQueueCapacity()
+    {
+        return (this.config == null) ? 0 : this.config.getInt(WRITE_QUEUE_CAPACITY, 0);
+    }
+
+    /**
+     * Writes the given Apache Tiles2 <tiles-definitions> to the given web resource, including the Tiles DOCTYPE.
+     */
+
+    protected Resource<?> writeTilesDefinitions(Node definitions, String filename)
+    {
+        WebResourceFacet web = project.getFacet(WebResourceFacet.class);
+
+        String definitionsXML = XMLParser.toXMLString(definitions);
+        definitionsXML = definitionsXML.substring(0, 55) + "\n<!DOCTYPE tiles-definitions PUBLIC \"-//Apache Software Foundation//DTD Tiles " +
+                "Configuration 2.0//EN\" \"http://tiles.apache.org/dtds/tiles-config_2_0.dtd\">\n" + definitionsXML.substring(55);
+
+        return this.output.createOrOverwrite(web.getWebResource(filename), definitionsXML, true);
+    }
+
+    protected void loadTemplates()
+    {
+
+        if (this.applicationContextTemplate == null)
+        {
+            this.applicationContextTemplate = ScaffoldTemplates.compile(this.compiler, APPLICATION_CONTEXT_TEMPLATE);
+        }
+
+        if (this.mvcContextTemplate == null)
+        {
+            this.mvcContextTemplate = ScaffoldTemplates.compile(this.compiler, MVC_CONTEXT_TEMPLATE);
+        }
+
+        if (this.webXMLTemplate == null)
+        {
+            this.webXMLTemplate = ScaffoldTemplates.compile(this.compiler, WEB_XML_TEMPLATE);
+        }
+
+        // Compile the DAO interface Java template.
+        
+        if (this.daoInterfaceTemplate == null)
+        {
+            this.daoInterfaceTemplate = ScaffoldTemplates.compile(this.compiler, DAO_INTERFACE_TEMPLATE);           
+        }
+        
+        // Compile the DAO interface implementation Java template.
+        
+        if (this.daoImplementationTemplate == null)
+        {
+            this.daoImplementationTemplate = ScaffoldTemplates.compile(this.compiler, DAO_IMPLEMENTATION_TEMPLATE);
+        }
+
+        // Compile the Spring MVC index controller Java template.
+
+        if (this.indexControllerTemplate == null)
+        {
+            this.indexControllerTemplate = ScaffoldTemplates.compile(this.compiler, INDEX_CONTROLLER_TEMPLATE);
+        }
+
+        // Compile the Spring MVC entity controller Java template.
+        
+        if (this.springControllerTemplate == null)
+        {
+            this.springControllerTemplate = ScaffoldTemplates.compile(this.compiler, SPRING_CONTROLLER_TEMPLATE);
+        }
+
+        if (this.conversionServiceTemplate == null)
+        {
+            this.conversionServiceTemplate = ScaffoldTemplates.compile(this.compiler, CONVERSION_SERVICE_TEMPLATE);
+        }
+
+        if (this.entityConverterTemplate == null)
+        {
+            this.entityConverterTemplate = ScaffoldTemplates.compile(this.compiler, ENTITY_CONVERTER_TEMPLATE);
+        }
+
+        if (this.searchTemplate == null)
+        {
+            this.searchTemplate = ScaffoldTemplates.compile(this.compiler, SEARCH_TEMPLATE);
+            this.searchTemplateMetawidgetIndent = ScaffoldTemplates.indentOf(this.searchTemplate, "@{metawidet}");
+            this.headerMetawidgetIndent = ScaffoldTemplates.indentOf(this.searchTemplate, "@{headerMetawidget}");
+            this.resultMetawidgetIndent = ScaffoldTemplates.indentOf(this.searchTemplate, "@{resultMetawidget}");
+        }
+
+        if (this.viewTemplate == null)
+        {
+            this.viewTemplate = ScaffoldTemplates.compile(this.compiler, VIEW_TEMPLATE);
+            this.viewTemplateMetawidgetIndent = ScaffoldTemplates.indentOf(this.viewTemplate, "@{metawidget}");
+        }
+
+        if (this.editTemplate == null)
+        {
+            this.editTemplate = ScaffoldTemplates.compile(this.compiler, EDIT_TEMPLATE);
+            this.editTemplateEntityMetawidgetIndent = ScaffoldTemplates.indentOf(this.editTemplate, "@{metawidget}");
+        }
+
+        if (this.createTemplate == null)
+        {
+            this.createTemplate = ScaffoldTemplates.compile(this.compiler, CREATE_TEMPLATE);
+            this.createTemplateEntityMetawidgetIndent = ScaffoldTemplates.indentOf(this.createTemplate, "@{metawidget}");
+        }
+
+        if (this.navigationTemplate == null)
+        {
+            this.navigationTemplate = ScaffoldTemplates.compile(this.compiler, NAVIGATION_TEMPLATE);
+            this.navigationTemplateIndent = ScaffoldTemplates.indentOf(this.navigationTemplate, "@{navigation}");
+        }
+
+        if (this.errorTemplate == null)
+        {
+            this.errorTemplate = ScaffoldTemplates.compile(this.compiler, ERROR_TEMPLATE);
+        }
+
+        if (this.indexTemplate == null)
+        {
+            this.indexTemplate = ScaffoldTemplates.compile(this.compiler, INDEX_TEMPLATE);
+        }
+
+        if (this.cacheStatisticsTemplate == null)
+        {
+            this.cacheStatisticsTemplate = ScaffoldTemplates.compile(this.compiler, CACHE_STATISTICS_TEMPLATE);
         }
     }
 
@@ -849,9 +1636,10 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
             }
         };
         
+        SpringFacet spring = project.getFacet(SpringFacet.class);
+
         for (Resource<?> resource : web.getWebResource("WEB-INF/views" + targetDir).listResources(filter))
         {
-            SpringFacet spring = project.getFacet(SpringFacet.class);
             HtmlAnchor link = new HtmlAnchor();
 
             if (spring.hasServlet(resource.getName()))
@@ -860,10 +1648,11 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
             }
             else
             {
-                link.putAttribute("href", "<c:url value=\"" + targetDir + pluralOf(resource.getName()).toLowerCase() + "/\"/>");
+                link.putAttribute("href", "<c:url value=\"" + targetDir + EntityDescriptor.forName(resource.getName()).getControllerPath()
+                        + "/\"/>");
             }
 
-            link.setTextContent(StringUtils.uncamelCase(resource.getName()));
+            link.setTextContent(EntityDescriptor.forName(resource.getName()).getLabel());
 
             HtmlTag listItem = new HtmlTag("li");
             listItem.getChildren().add(link);
@@ -877,6 +1666,7 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
         context.put("navigation", writer.toString().trim());
         context.put("targetDir", targetDir);
         context.put("appName", project.getProjectRoot().getName());
+        context.put("typeahead", isTypeaheadLookups());
 
         if (this.navigationTemplate == null)
         {
@@ -885,12 +1675,12 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
 
         if (targetDir.equals("/"))
         {
-            return ScaffoldUtil.createOrOverwrite(this.prompt, (FileResource<?>) getTemplateStrategy().getDefaultTemplate(),
+            return this.output.createOrOverwrite((FileResource<?>) getTemplateStrategy().getDefaultTemplate(),
                     this.navigationTemplate.render(context), overwrite);
         }
         else
         {
-            return ScaffoldUtil.createOrOverwrite(this.prompt, web.getWebResource("WEB-INF/layouts/" + targetDir.substring(1,
+            return this.output.createOrOverwrite(web.getWebResource("WEB-INF/layouts/" + targetDir.substring(1,
                     targetDir.length()-1) + "Template.jsp"), this.navigationTemplate.render(context), overwrite);
         }
     }
@@ -901,20 +1691,7 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
 
     protected int parseIndent(final String template, final String indentOf)
     {
-        int indent = 0;
-        int indexOf = template.indexOf(indentOf);
-
-        while ((indexOf > 0) && (template.charAt(indexOf) != '\n'))
-        {
-            if (template.charAt(indexOf) == '\t')
-            {
-                indent++;
-            }
-
-            indexOf--;
-        }
-
-        return indent;
+        return ScaffoldTemplates.parseIndent(template, indentOf);
     }
 
     /**
@@ -992,59 +1769,138 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
         return false;
     }
 
-    protected Map<Object, Object> findEntityRelationships(JavaClass entity, Map<Object, Object> context) throws FileNotFoundException
+    /**
+     * Adds the entity's relationships to the given context.
+     * <p>
+     * The converters required by N-to-many relationships are recorded under <code>converters</code>, rather than
+     * generated here, so that a run over several entities creates each converter (and updates the ConversionService)
+     * only once.
+     */
+
+    protected Map<Object, Object> findEntityRelationships(JavaClass entity, Map<Object, Object> context)
     {
         List<String> entityNames = new ArrayList<String>();
         List<String> entityClasses = new ArrayList<String>();
         List<String> ccEntityClasses = new ArrayList<String>();
         List<String> nToMany = new ArrayList<String>();
+        List<String> entityGetters = new ArrayList<String>();
 
-        for ( Field<?> field : entity.getFields())
-        {
-            if (field.hasAnnotation(OneToOne.class) || field.hasAnnotation(OneToMany.class) || field.hasAnnotation(ManyToOne.class)
-                    || field.hasAnnotation(ManyToMany.class))
-            {
-                String name = field.getName();
-                entityNames.add(name);
-                String clazz = new String();
-
-                if (field.hasAnnotation(OneToMany.class) || field.hasAnnotation(ManyToMany.class))
-                {
-                    clazz = field.getStringInitializer();
-                    int firstIndexOf = clazz.indexOf("<");
-                    int lastIndexOf = clazz.indexOf(">");
+        EntityGraph.EntityNode node = EntityGraph.forProject(this.project).getNode(entity);
 
-                    clazz = clazz.substring(firstIndexOf + 1, lastIndexOf);
-                    String domainPackage = findDomainPackage(clazz, entity);
+        for (EntityGraph.Relationship relationship : node.getRelationships())
+        {
+            String clazz = relationship.getTargetType();
 
-                    nToMany.add(clazz);
-                    createConverter(clazz, domainPackage);
-                }
-                else
-                {
-                    clazz = field.getType();
-                }
+            entityNames.add(relationship.getName());
+            entityClasses.add(clazz);
+            ccEntityClasses.add(EntityDescriptor.forName(clazz).getCamelCaseName());
+            entityGetters.add("get" + StringUtils.capitalize(relationship.getName()));
 
-                entityClasses.add(clazz);
-                String ccEntity = StringUtils.camelCase(clazz);
-                ccEntityClasses.add(ccEntity);
+            if (relationship.getKind().isToMany())
+            {
+                nToMany.add(clazz);
             }
         }
 
         context.put("entityNames", entityNames);
         context.put("entityClasses", entityClasses);
         context.put("ccEntityClasses", ccEntityClasses);
+        context.put("entityGetters", entityGetters);
+        context.put("converters", node.getConverters());
 
         if (!nToMany.isEmpty())
         {
             context.put("nToMany", nToMany);
-            addConverters(context);
-            addConversionService();
         }
 
         return context;
     }
 
+    /**
+     * Adds the pagination mode, and the property keyset pagination seeks on, to the given context.
+     * <p>
+     * The key is the entity's single primary key or, failing that, <code>id</code> (as the generated DAOs assume
+     * elsewhere).
+     */
+
+    protected Map<Object, Object> findPaginationKey(JavaClass entity, Map<Object, Object> context)
+    {
+        String keyProperty = "id";
+        List<String> primaryKeys = EntityGraph.forProject(this.project).getNode(entity).getPrimaryKeys();
+
+        if (primaryKeys.size() == 1)
+        {
+            keyProperty = primaryKeys.get(0);
+        }
+
+        context.put("keysetPagination", isKeysetPagination());
+        context.put("keyProperty", keyProperty);
+        context.put("keyGetter", "get" + StringUtils.capitalize(keyProperty));
+
+        return context;
+    }
+
+    /**
+     * Adds whether relationships use typeahead lookups, and the property the entity's own <code>lookup</code> endpoint
+     * labels each match with, to the given context.
+     * <p>
+     * The label is the entity's first <code>String</code> field or, failing that, its pagination key.
+     */
+
+    protected Map<Object, Object> findLookupLabel(JavaClass entity, Map<Object, Object> context)
+    {
+        String lookupLabel = (String) context.get("keyProperty");
+        boolean lookupLabelIsString = false;
+
+        for (Field<JavaClass> field : entity.getFields())
+        {
+            String type = field.getType();
+
+            if (!field.isStatic() && ("String".equals(type) || String.class.getName().equals(type)))
+            {
+                lookupLabel = field.getName();
+                lookupLabelIsString = true;
+                break;
+            }
+        }
+
+        context.put("typeahead", isTypeaheadLookups());
+        context.put("lookupLabel", lookupLabel);
+        context.put("lookupLabelIsString", lookupLabelIsString);
+
+        return context;
+    }
+
+    /**
+     * Adds the entity's count strategy, and what the generated DAO needs to implement it, to the given context.
+     */
+
+    protected Map<Object, Object> findCountStrategy(JavaClass entity, Map<Object, Object> context)
+    {
+        CountStrategy strategy = getCountStrategy(entity);
+
+        context.put("countStrategy", strategy.name());
+        context.put("detectNextPage", strategy.isDetectingNextPage());
+        context.put("countCacheTtl", getCountCacheTtl() * 1000L);
+        context.put("countEstimateQuery", getCountEstimateQuery().replace("\\", "\\\\").replace("\"", "\\\""));
+
+        String tableName = entity.getName();
+
+        if (entity.hasAnnotation("javax.persistence.Table"))
+        {
+            String name = entity.getAnnotation("javax.persistence.Table").getStringValue("name");
+
+            if (name != null && !name.isEmpty())
+            {
+                tableName = name;
+            }
+        }
+
+        context.put("tableName", tableName);
+
+        return context;
+    }
+
     protected void addConversionService()
     {
         MetadataFacet meta = project.getFacet(MetadataFacet.class);
@@ -1056,7 +1912,7 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
         beans.getSingle("mvc:annotation-driven").attribute("conversion-service", "conversionService");
         addContextComponentScan(beans, meta.getTopLevelPackage() + ".conversion");
 
-        web.createWebResource(XMLParser.toXMLString(beans), filename);
+        this.output.createOrOverwrite(web.getWebResource(filename), XMLParser.toXMLString(beans), true);
     }
 
     protected void addContextComponentScan(Node beans, String basePackage)
@@ -1073,22 +1929,6 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
         scan.attribute("base-package", basePackage);
     }
 
-    protected String findDomainPackage(String clazz, JavaClass entity)
-    {
-
-        for (Import imp : entity.getImports())
-        {
-            String simpleName = imp.getSimpleName();
-
-            if (simpleName.equals(clazz))
-            {
-                return imp.getQualifiedName();
-            }
-        }
-
-        return null;
-    }
-
     @SuppressWarnings("unchecked")
     protected void addConverters(Map<Object, Object> context) throws FileNotFoundException
     {
@@ -1114,24 +1954,25 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
                 conversionService.addImport(meta.getTopLevelPackage() + ".repo." + clazz + "Dao");
                 conversionService.addImport(meta.getTopLevelPackage() + ".converters." + clazz + "Converter");
 
-                Field<?> dao = conversionService.addField("private " + clazz + "Dao " + StringUtils.camelCase(clazz) + "Dao;");
+                EntityDescriptor descriptor = EntityDescriptor.forName(clazz);
+                Field<?> dao = conversionService.addField("private " + descriptor.getDaoName() + " " + descriptor.getDaoFieldName() + ";");
                 dao.addAnnotation("org.springframework.beans.factory.annotation.Autowired");
 
                 Method<?> afterPropertiesSet = conversionService.getMethod("afterPropertiesSet");
                 String body = afterPropertiesSet.getBody();
-                body += "this.addConverter(new " + clazz + "Converter(" + StringUtils.camelCase(clazz) + "Dao));";
+                body += "this.addConverter(new " + clazz + "Converter(" + descriptor.getDaoFieldName() + "));";
                 afterPropertiesSet.setBody(body);
             }
         }
 
-        java.saveJavaSource(conversionService);
+        this.output.createOrOverwrite(java.getJavaResource(conversionService), conversionService.toString(), true);
     }
 
     protected boolean hasConverter(JavaClass conversionService, String clazz)
     {
         for (Field<?> dao : conversionService.getFields())
         {
-            if (dao.getName().equals(StringUtils.camelCase(clazz) + "Dao"))
+            if (dao.getName().equals(EntityDescriptor.forName(clazz).getDaoFieldName()))
             {
                 return true;
             }
@@ -1149,11 +1990,13 @@ public class SpringScaffold extends BaseFacet implements ScaffoldProvider
 
         context.put("entityName", clazz);
         context.put("domainPackage", domainPackage);
-        context.put("ccEntity", StringUtils.camelCase(clazz));
+        context.put("ccEntity", EntityDescriptor.forName(clazz).getCamelCaseName());
         context.put("topLevelPackage", meta.getTopLevelPackage());
 
-        JavaClass entityConverter = JavaParser.parse(JavaClass.class, this.entityConverterTemplate.render(context));
-        java.saveJavaSource(entityConverter);
+        // Like saveJavaSource, always overwrite
+
+        JavaResource entityConverter = java.getJavaResource(meta.getTopLevelPackage() + ".converters." + clazz + "Converter");
+        this.output.createOrOverwrite(entityConverter, Formatter.format(this.entityConverterTemplate.render(context)), true);
     }
 
     private String processTargetDir(String targetDir)
@@ -23,6 +23,7 @@ package org.jboss.forge.scaffold.spring.metawidget.config;
 
 import org.jboss.forge.env.Configuration;
 import org.jboss.forge.project.Project;
+import org.jboss.forge.scaffold.spring.metawidget.inspector.InspectionResultCache;
 import org.metawidget.config.impl.BaseConfigReader;
 
 /**
@@ -42,6 +43,10 @@ public class ForgeConfigReader
 
    private static final String PROJECT_ELEMENT_NAME = "forgeProject";
 
+   private static final String INSPECTION_RESULT_CACHE_ELEMENT_NAME = "forgeInspectionResultCache";
+
+   private static final String PROJECT_ATTRIBUTE = ForgeConfigReader.class.getName();
+
    //
    // Private members
    //
@@ -50,6 +55,8 @@ public class ForgeConfigReader
 
    private Project project;
 
+   private final InspectionResultCache inspectionResultCache = new InspectionResultCache();
+
    //
    // Constructor
    //
@@ -60,6 +67,48 @@ public class ForgeConfigReader
       this.project = project;
    }
 
+   //
+   // Public statics
+   //
+
+   /**
+    * Returns the ConfigReader for the given project, creating it if necessary.
+    * <p>
+    * BaseConfigReader caches the configs it has parsed, and the immutable Inspectors, WidgetBuilders and Layouts it has
+    * instantiated. Sharing one ConfigReader per project means these are built once, not once per Forge invocation.
+    */
+
+   public static ForgeConfigReader forProject(Configuration config, Project project)
+   {
+      synchronized (project)
+      {
+         Object reader = project.getAttribute(PROJECT_ATTRIBUTE);
+
+         if (reader instanceof ForgeConfigReader && ((ForgeConfigReader) reader).config == config)
+         {
+            return (ForgeConfigReader) reader;
+         }
+
+         ForgeConfigReader newReader = new ForgeConfigReader(config, project);
+         project.setAttribute(PROJECT_ATTRIBUTE, newReader);
+
+         return newReader;
+      }
+   }
+
+   //
+   // Public methods
+   //
+
+   /**
+    * The cache shared by every <tt>CachingInspector</tt> configured with <tt>&lt;forgeInspectionResultCache/&gt;</tt>.
+    */
+
+   public InspectionResultCache getInspectionResultCache()
+   {
+      return this.inspectionResultCache;
+   }
+
    //
    // Protected methods
    //
@@ -77,6 +126,11 @@ public class ForgeConfigReader
          return true;
       }
 
+      if (INSPECTION_RESULT_CACHE_ELEMENT_NAME.equals(name))
+      {
+         return true;
+      }
+
       return super.isNative(name);
    }
 
@@ -93,6 +147,11 @@ public class ForgeConfigReader
          return this.config;
       }
 
+      if (INSPECTION_RESULT_CACHE_ELEMENT_NAME.equals(name))
+      {
+         return this.inspectionResultCache;
+      }
+
       return super.createNative(name, namespace, recordedText);
    }
 }
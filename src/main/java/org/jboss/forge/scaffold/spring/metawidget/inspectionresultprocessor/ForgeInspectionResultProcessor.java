@@ -22,56 +22,118 @@
 
 package org.jboss.forge.scaffold.spring.metawidget.inspectionresultprocessor;
 
-import java.util.Map;
 import static org.metawidget.inspector.InspectionResultConstants.*;
 import static org.jboss.forge.scaffold.spring.metawidget.inspector.ForgeInspectionResultConstants.*;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
 import org.metawidget.inspectionresultprocessor.iface.InspectionResultProcessor;
+import org.metawidget.inspectionresultprocessor.iface.InspectionResultProcessorException;
 import org.metawidget.statically.StaticMetawidget;
-import org.metawidget.util.XmlUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.metawidget.util.CollectionUtils;
 
 /**
+ * Adds the primary key of each entity to its properties, as <tt>ENTITY_PRIMARY_KEY</tt>.
+ * <p>
+ * The inspection result is copied in a single StAX pass, without building a DOM. Each property takes the primary key of
+ * the nearest preceding entity that declares one (an inspection result normally has just one entity).
  *
  * @author Thomas Frühbeck
  */
 public class ForgeInspectionResultProcessor implements InspectionResultProcessor<StaticMetawidget> {
-   
+
+   private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+   private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+   private static final XMLEventFactory EVENT_FACTORY = XMLEventFactory.newInstance();
+
+   private static final QName PRIMARY_KEY_NAME = new QName(PRIMARY_KEY);
+
+   static {
+      INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+   }
+
    @Override
    public String processInspectionResult(String inspectionResult, StaticMetawidget metawidget, Object toInspect, String type, String... names) {
 
-      Document document = XmlUtils.documentFromString(inspectionResult);
-      NodeList entities = document.getElementsByTagName(ENTITY);
-      
-      if (entities.getLength() > 0) {
-         for (int i=0; i<entities.getLength(); i++) {
-            
-            Node entity = entities.item(i);
-            Map<String,String> attributes = XmlUtils.getAttributesAsMap(entity);
-
-            String primaryKey = attributes.get(PRIMARY_KEY);
-            if (null != primaryKey) {
-      
-               NodeList properties = document.getElementsByTagName(PROPERTY);
-               if (properties.getLength() > 0) {
-                  for (int j=0; j<properties.getLength(); j++) {
-                     
-                     Element property = (Element)properties.item(j);
-                     Map<String,String> propAttribs = XmlUtils.getAttributesAsMap(property);
-                     propAttribs.put(ENTITY_PRIMARY_KEY, primaryKey);
-                     
-                     XmlUtils.setMapAsAttributes(property, propAttribs);
+      // Most inspection results declare no entity primary key, so do not even parse those
+
+      if (inspectionResult == null || inspectionResult.indexOf(PRIMARY_KEY) == -1) {
+         return inspectionResult;
+      }
+
+      try {
+         XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(new StringReader(inspectionResult));
+         StringWriter out = new StringWriter(inspectionResult.length() + 64);
+         XMLEventWriter writer = OUTPUT_FACTORY.createXMLEventWriter(out);
+
+         String primaryKey = null;
+
+         while (reader.hasNext()) {
+            XMLEvent event = reader.nextEvent();
+
+            // Like XmlUtils.documentToString, do not write an XML declaration
+
+            if (event.isStartDocument() || event.isEndDocument()) {
+               continue;
+            }
+
+            if (event.isStartElement()) {
+               StartElement element = event.asStartElement();
+               String name = element.getName().getLocalPart();
+
+               if (ENTITY.equals(name)) {
+                  Attribute entityPrimaryKey = element.getAttributeByName(PRIMARY_KEY_NAME);
+
+                  if (entityPrimaryKey != null) {
+                     primaryKey = entityPrimaryKey.getValue();
                   }
+               } else if (PROPERTY.equals(name) && primaryKey != null) {
+                  event = withEntityPrimaryKey(element, primaryKey);
                }
             }
+
+            writer.add(event);
+         }
+
+         writer.close();
+         reader.close();
+
+         return out.toString();
+      } catch (XMLStreamException e) {
+         throw InspectionResultProcessorException.newException(e);
+      }
+   }
+
+   private StartElement withEntityPrimaryKey(StartElement element, String primaryKey) {
+
+      List<Attribute> attributes = CollectionUtils.newArrayList();
+
+      for (Iterator<?> i = element.getAttributes(); i.hasNext();) {
+         Attribute attribute = (Attribute) i.next();
+
+         if (!ENTITY_PRIMARY_KEY.equals(attribute.getName().getLocalPart())) {
+            attributes.add(attribute);
          }
       }
 
-      inspectionResult = XmlUtils.documentToString(document, false);
-      
-      return inspectionResult;
+      attributes.add(EVENT_FACTORY.createAttribute(ENTITY_PRIMARY_KEY, primaryKey));
+
+      return EVENT_FACTORY.createStartElement(element.getName(), attributes.iterator(), element.getNamespaces());
    }
-   
 }
@@ -0,0 +1,90 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.forge.scaffold.spring.metawidget.inspector;
+
+import org.metawidget.inspector.iface.Inspector;
+
+/**
+ * Inspector that memoizes the results of another Inspector in an <tt>InspectionResultCache</tt>.
+ * <p>
+ * Only static inspections (those with no object to inspect, as made by the static Metawidgets) are cached, keyed by
+ * type and names. Inspection results are cached as strings, rather than DOM elements, so that each Metawidget's
+ * <tt>InspectionResultProcessors</tt> work on their own copy.
+ * <p>
+ * Every <tt>CachingInspector</tt> sharing a cache must wrap an equivalent Inspector.
+ */
+
+public class CachingInspector
+         implements Inspector
+{
+   //
+   // Private members
+   //
+
+   private final Inspector inspector;
+
+   private final InspectionResultCache cache;
+
+   //
+   // Constructor
+   //
+
+   public CachingInspector(CachingInspectorConfig config)
+   {
+      this.inspector = config.getInspector();
+      this.cache = config.getCache();
+
+      if (this.inspector == null)
+      {
+         throw new NullPointerException("inspector");
+      }
+   }
+
+   //
+   // Public methods
+   //
+
+   @Override
+   public String inspect(Object toInspect, String type, String... names)
+   {
+      if (toInspect != null || this.cache == null || type == null)
+      {
+         return this.inspector.inspect(toInspect, type, names);
+      }
+
+      String inspectionResult = this.cache.get(type, names);
+
+      if (inspectionResult == null)
+      {
+         inspectionResult = this.inspector.inspect(null, type, names);
+
+         // ConcurrentHashMap cannot store nulls (and an empty inspection is cheap to repeat)
+
+         if (inspectionResult != null)
+         {
+            this.cache.put(inspectionResult, type, names);
+         }
+      }
+
+      return inspectionResult;
+   }
+}
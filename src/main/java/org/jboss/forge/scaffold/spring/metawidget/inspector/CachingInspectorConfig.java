@@ -0,0 +1,109 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.forge.scaffold.spring.metawidget.inspector;
+
+import org.metawidget.inspector.iface.Inspector;
+import org.metawidget.util.simple.ObjectUtils;
+
+/**
+ * Configures a <tt>CachingInspector</tt>.
+ */
+
+public class CachingInspectorConfig
+{
+   //
+   // Private members
+   //
+
+   private Inspector inspector;
+
+   private InspectionResultCache cache;
+
+   //
+   // Public methods
+   //
+
+   /**
+    * @return this, as part of a fluent interface
+    */
+
+   public CachingInspectorConfig setInspector(Inspector inspector)
+   {
+      this.inspector = inspector;
+      return this;
+   }
+
+   /**
+    * @return this, as part of a fluent interface
+    */
+
+   public CachingInspectorConfig setCache(InspectionResultCache cache)
+   {
+      this.cache = cache;
+      return this;
+   }
+
+   @Override
+   public boolean equals(Object that)
+   {
+      if (this == that)
+      {
+         return true;
+      }
+
+      if (!ObjectUtils.nullSafeClassEquals(this, that))
+      {
+         return false;
+      }
+
+      if (!ObjectUtils.nullSafeEquals(this.inspector, ((CachingInspectorConfig) that).inspector))
+      {
+         return false;
+      }
+
+      return (this.cache == ((CachingInspectorConfig) that).cache);
+   }
+
+   @Override
+   public int hashCode()
+   {
+      int hashCode = 1;
+      hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode(this.inspector);
+      hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode(this.cache);
+
+      return hashCode;
+   }
+
+   //
+   // Protected methods
+   //
+
+   protected Inspector getInspector()
+   {
+      return this.inspector;
+   }
+
+   protected InspectionResultCache getCache()
+   {
+      return this.cache;
+   }
+}
@@ -0,0 +1,106 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.forge.scaffold.spring.metawidget.inspector;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inspection results shared by every Metawidget in one scaffolding run.
+ * <p>
+ * The scaffold's Metawidgets all run the same Inspectors over the same types, differing only in their
+ * <tt>InspectionResultProcessors</tt>. Caching the raw inspection result, as an XML string, lets every Metawidget after
+ * the first skip straight to its own processors. The cache is thread-safe, and should be cleared at the start of each
+ * run so that changes to the inspected sources are picked up (or, in resident mode, whenever those sources change).
+ */
+
+public class InspectionResultCache
+{
+   //
+   // Private members
+   //
+
+   private final Map<String, String> results = new ConcurrentHashMap<String, String>();
+
+   //
+   // Public methods
+   //
+
+   public String get(String type, String... names)
+   {
+      return this.results.get(key(type, names));
+   }
+
+   public void put(String inspectionResult, String type, String... names)
+   {
+      this.results.put(key(type, names), inspectionResult);
+   }
+
+   public void clear()
+   {
+      this.results.clear();
+   }
+
+   public boolean isEmpty()
+   {
+      return this.results.isEmpty();
+   }
+
+   /**
+    * Returns a copy of every cached result, keyed by type and names, for persisting between processes.
+    */
+
+   public Map<String, String> getResults()
+   {
+      return new HashMap<String, String>(this.results);
+   }
+
+   /**
+    * Adds results previously returned by <code>getResults</code>.
+    */
+
+   public void putResults(Map<String, String> results)
+   {
+      this.results.putAll(results);
+   }
+
+   //
+   // Private methods
+   //
+
+   private String key(String type, String... names)
+   {
+      StringBuilder builder = new StringBuilder(type);
+
+      if (names != null)
+      {
+         for (String name : names)
+         {
+            builder.append('/');
+            builder.append(name);
+         }
+      }
+
+      return builder.toString();
+   }
+}
@@ -0,0 +1,251 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.forge.scaffold.spring.metawidget.inspector;
+
+import static org.metawidget.inspector.InspectionResultConstants.NAME;
+import static org.metawidget.inspector.InspectionResultConstants.TYPE;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.metawidget.inspector.iface.DomInspector;
+import org.metawidget.inspector.iface.Inspector;
+import org.metawidget.inspector.iface.InspectorException;
+import org.metawidget.util.CollectionUtils;
+import org.metawidget.util.XmlUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Composite Inspector that runs its Inspectors in parallel.
+ * <p>
+ * Each Inspector after the first is submitted to a pool shared by every <tt>ParallelCompositeInspector</tt>, while the
+ * calling thread runs the first. The results are then merged in the order the Inspectors were configured, exactly as
+ * <tt>CompositeInspector</tt> merges them, so the combined inspection result does not depend on which Inspector
+ * finishes first.
+ * <p>
+ * The Inspectors must be safe to run concurrently (as <tt>PropertyTypeInspector</tt>, <tt>ForgeInspector</tt>,
+ * <tt>JpaInspector</tt> and <tt>BeanValidationInspector</tt> are, even when sharing a <tt>ForgePropertyStyle</tt>).
+ */
+
+public class ParallelCompositeInspector
+         implements DomInspector<Element>
+{
+   //
+   // Private statics
+   //
+
+   private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(Runtime.getRuntime()
+            .availableProcessors(), new ThreadFactory()
+   {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable runnable)
+      {
+         Thread thread = new Thread(runnable, "spring-scaffold-inspector-" + this.count.incrementAndGet());
+         thread.setDaemon(true);
+         return thread;
+      }
+   });
+
+   //
+   // Private members
+   //
+
+   private final Inspector[] inspectors;
+
+   //
+   // Constructor
+   //
+
+   public ParallelCompositeInspector(ParallelCompositeInspectorConfig config)
+   {
+      Inspector[] configured = config.getInspectors();
+
+      if (configured == null || configured.length == 0)
+      {
+         throw InspectorException.newException("ParallelCompositeInspector needs at least one Inspector");
+      }
+
+      this.inspectors = configured.clone();
+
+      for (Inspector inspector : this.inspectors)
+      {
+         if (inspector == null)
+         {
+            throw InspectorException.newException("ParallelCompositeInspector cannot have a null Inspector");
+         }
+      }
+   }
+
+   //
+   // Public methods
+   //
+
+   @Override
+   public String inspect(Object toInspect, String type, String... names)
+   {
+      Element element = inspectAsDom(toInspect, type, names);
+
+      if (element == null)
+      {
+         return null;
+      }
+
+      return XmlUtils.nodeToString(element, false);
+   }
+
+   @Override
+   public Element inspectAsDom(final Object toInspect, final String type, final String... names)
+   {
+      // Start the other Inspectors first, then run the first one on this thread
+
+      List<Future<Element>> futures = CollectionUtils.newArrayList();
+
+      for (int loop = 1; loop < this.inspectors.length; loop++)
+      {
+         final Inspector inspector = this.inspectors[loop];
+
+         futures.add(EXECUTOR.submit(new Callable<Element>()
+         {
+            @Override
+            public Element call()
+            {
+               return runInspector(inspector, toInspect, type, names);
+            }
+         }));
+      }
+
+      Element[] results = new Element[this.inspectors.length];
+
+      try
+      {
+         results[0] = runInspector(this.inspectors[0], toInspect, type, names);
+
+         for (int loop = 1; loop < results.length; loop++)
+         {
+            results[loop] = futures.get(loop - 1).get();
+         }
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw InspectorException.newException(e);
+      }
+      catch (ExecutionException e)
+      {
+         Throwable cause = e.getCause();
+
+         if (cause instanceof RuntimeException)
+         {
+            throw (RuntimeException) cause;
+         }
+
+         throw InspectorException.newException(cause);
+      }
+      finally
+      {
+         for (Future<Element> future : futures)
+         {
+            future.cancel(true);
+         }
+      }
+
+      Document masterDocument = combineResults(results);
+
+      if (masterDocument == null || !masterDocument.hasChildNodes())
+      {
+         return null;
+      }
+
+      return masterDocument.getDocumentElement();
+   }
+
+   //
+   // Protected methods
+   //
+
+   protected Element runInspector(Inspector inspector, Object toInspect, String type, String... names)
+   {
+      if (inspector instanceof DomInspector<?>)
+      {
+         @SuppressWarnings("unchecked")
+         DomInspector<Element> domInspector = (DomInspector<Element>) inspector;
+         return domInspector.inspectAsDom(toInspect, type, names);
+      }
+
+      String xml = inspector.inspect(toInspect, type, names);
+
+      if (xml == null)
+      {
+         return null;
+      }
+
+      return XmlUtils.documentFromString(xml).getDocumentElement();
+   }
+
+   /**
+    * Merges the inspection results in the order of their Inspectors, skipping any that returned nothing.
+    */
+
+   protected Document combineResults(Element... results)
+   {
+      Document masterDocument = null;
+
+      for (Element result : results)
+      {
+         if (result == null)
+         {
+            continue;
+         }
+
+         if (masterDocument == null)
+         {
+            masterDocument = result.getOwnerDocument();
+            continue;
+         }
+
+         Element masterEntity = XmlUtils.getFirstChildElement(masterDocument.getDocumentElement());
+         Element entity = XmlUtils.getFirstChildElement(result);
+
+         if (masterEntity == null)
+         {
+            masterDocument = result.getOwnerDocument();
+            continue;
+         }
+
+         if (entity != null)
+         {
+            XmlUtils.combineElements(masterEntity, entity, TYPE, NAME);
+         }
+      }
+
+      return masterDocument;
+   }
+}
@@ -21,13 +21,14 @@
  */
 package org.jboss.forge.scaffold.spring.metawidget.inspector.propertystyle;
 
-import java.io.FileNotFoundException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationHandler;
 import java.text.MessageFormat;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.jboss.forge.parser.java.EnumConstant;
 import org.jboss.forge.parser.java.Field;
@@ -39,7 +40,6 @@ import org.jboss.forge.parser.java.MethodHolder;
 import org.jboss.forge.parser.java.Parameter;
 import org.jboss.forge.parser.java.Type;
 import org.jboss.forge.project.Project;
-import org.jboss.forge.project.facets.JavaSourceFacet;
 import org.metawidget.inspector.iface.InspectorException;
 import org.metawidget.inspector.impl.propertystyle.BaseProperty;
 import org.metawidget.inspector.impl.propertystyle.BasePropertyStyle;
@@ -66,6 +66,8 @@ public class ForgePropertyStyle
 
    private final MessageFormat privateFieldConvention;
 
+   private final Map<String, CachedProperties> propertiesCache = new ConcurrentHashMap<String, CachedProperties>();
+
    //
    // Constructor
    //
@@ -82,6 +84,29 @@ public class ForgePropertyStyle
    // Public methods
    //
 
+   /**
+    * Overridden to re-inspect the properties of a type whenever its source changes, rather than caching them forever.
+    */
+
+   @Override
+   public Map<String, Property> getProperties(final String type)
+   {
+      JavaSource<?> source = sourceForName(this.project, type);
+      CachedProperties cached = this.propertiesCache.get(type);
+
+      // JavaSourceCache returns the same instance until the source is reparsed
+
+      if (cached != null && cached.source == source)
+      {
+         return cached.properties;
+      }
+
+      Map<String, Property> properties = Collections.unmodifiableMap(inspectProperties(type));
+      this.propertiesCache.put(type, new CachedProperties(source, properties));
+
+      return properties;
+   }
+
    /**
     * Traverses the given Class heirarchy using properties of the given names.
     *
@@ -406,17 +431,9 @@ public class ForgePropertyStyle
    
    static JavaSource<?> sourceForName(final Project project, final String type)
    {
-      try
-      {
-         JavaSourceFacet javaSourceFact = project.getFacet(JavaSourceFacet.class);
-         return javaSourceFact.getJavaResource(type).getJavaSource();
-      }
-      catch (FileNotFoundException e)
-      {
-         // Not a Forge-based type
+      // Parsing is expensive, and the same entities and enums are looked up by every inspection
 
-         return null;
-      }
+      return JavaSourceCache.forProject(project).getJavaSource(type);
    }
 
    //
@@ -438,6 +455,18 @@ public class ForgePropertyStyle
 
       private final Project project;
 
+      /**
+       * Annotation proxies already handed out, by annotation class. Proxies are immutable, so can be shared.
+       */
+
+      private final Map<Class<?>, Annotation> annotationProxies = new ConcurrentHashMap<Class<?>, Annotation>();
+
+      /**
+       * Source annotations on the getter and private field, by qualified name. Built on first use.
+       */
+
+      private volatile Map<String, org.jboss.forge.parser.java.Annotation<?>> annotationIndex;
+
       //
       // Constructor
       //
@@ -494,23 +523,29 @@ public class ForgePropertyStyle
       @Override
       public <T extends Annotation> T getAnnotation(final Class<T> annotationClass)
       {
-         org.jboss.forge.parser.java.Annotation<?> annotation = null;
-
-         // https://issues.jboss.org/browse/FORGE-439: support annotations on readMethod
+         Annotation cachedProxy = this.annotationProxies.get(annotationClass);
 
-         if (this.readMethod != null)
+         if (cachedProxy != null)
          {
-            annotation = this.readMethod.getAnnotation(annotationClass.getName());
+            return annotationClass.cast(cachedProxy);
          }
 
-         if (annotation == null && this.privateField != null)
+         // Inspectors probe for many annotations, most of which are absent, so avoid scanning the annotation lists
+
+         Map<String, org.jboss.forge.parser.java.Annotation<?>> index = getAnnotationIndex();
+         org.jboss.forge.parser.java.Annotation<?> annotation = index.get(annotationClass.getName());
+
+         // Annotations whose import cannot be resolved (eg. wildcard imports) are indexed under their simple name
+
+         if (annotation == null)
          {
-            annotation = this.privateField.getAnnotation(annotationClass.getName());
+            annotation = index.get(annotationClass.getSimpleName());
          }
 
          if (annotation != null)
          {
             T annotationProxy = AnnotationProxy.newInstance(annotation);
+            this.annotationProxies.put(annotationClass, annotationProxy);
             return annotationProxy;
          }
 
@@ -565,6 +600,65 @@ public class ForgePropertyStyle
       {
          return this.writeMethod;
       }
+
+      //
+      // Private methods
+      //
+
+      private Map<String, org.jboss.forge.parser.java.Annotation<?>> getAnnotationIndex()
+      {
+         Map<String, org.jboss.forge.parser.java.Annotation<?>> index = this.annotationIndex;
+
+         if (index == null)
+         {
+            index = CollectionUtils.newHashMap();
+
+            if (this.privateField != null)
+            {
+               for (org.jboss.forge.parser.java.Annotation<?> annotation : this.privateField.getAnnotations())
+               {
+                  index.put(annotation.getQualifiedName(), annotation);
+               }
+            }
+
+            // https://issues.jboss.org/browse/FORGE-439: support annotations on readMethod (which take precedence)
+
+            if (this.readMethod != null)
+            {
+               for (org.jboss.forge.parser.java.Annotation<?> annotation : this.readMethod.getAnnotations())
+               {
+                  index.put(annotation.getQualifiedName(), annotation);
+               }
+            }
+
+            // Racing threads build identical indexes, so there is no need to synchronize
+
+            this.annotationIndex = index;
+         }
+
+         return index;
+      }
+   }
+
+   private static class CachedProperties
+   {
+      //
+      // Private members
+      //
+
+      final JavaSource<?> source;
+
+      final Map<String, Property> properties;
+
+      //
+      // Constructor
+      //
+
+      CachedProperties(final JavaSource<?> source, final Map<String, Property> properties)
+      {
+         this.source = source;
+         this.properties = properties;
+      }
    }
 
    /**
@@ -577,10 +671,30 @@ public class ForgePropertyStyle
       // Private statics
       //
 
+      private static final Map<String, Class<?>> ANNOTATION_CLASSES = new ConcurrentHashMap<String, Class<?>>();
+
+      private static final Map<Class<?>, Map<String, java.lang.reflect.Method>> ANNOTATION_MEMBERS = new ConcurrentHashMap<Class<?>, Map<String, java.lang.reflect.Method>>();
+
+      /**
+       * Stands in for null values, which a ConcurrentHashMap cannot store.
+       */
+
+      private static final Object NULL_VALUE = new Object();
+
+      //
+      // Private members
+      //
+
       private final org.jboss.forge.parser.java.Annotation<?> annotationSource;
 
       private final Class<T> annotationClass;
 
+      /**
+       * Member values, parsed on first use.
+       */
+
+      private final Map<String, Object> values = new ConcurrentHashMap<String, Object>();
+
       //
       // Public statics
       //
@@ -591,7 +705,14 @@ public class ForgePropertyStyle
       {
          try
          {
-            Class<T> annotationClass = (Class<T>) Class.forName(annotationSource.getQualifiedName());
+            String annotationClassName = annotationSource.getQualifiedName();
+            Class<T> annotationClass = (Class<T>) ANNOTATION_CLASSES.get(annotationClassName);
+
+            if (annotationClass == null)
+            {
+               annotationClass = (Class<T>) Class.forName(annotationClassName);
+               ANNOTATION_CLASSES.put(annotationClassName, annotationClass);
+            }
 
             // TODO: test this not using annotationSource.getClass().getClassLoader() (will require integration test)
 
@@ -636,26 +757,21 @@ public class ForgePropertyStyle
                return this.annotationClass;
             }
 
-            // If no value, return the default...
-
-            java.lang.reflect.Method annotationMethod = this.annotationClass.getMethod(methodName);
-            String literalValue = this.annotationSource.getLiteralValue(methodName);
+            Object value = this.values.get(methodName);
 
-            if (literalValue == null)
+            if (value == null)
             {
-               Object defaultValue = annotationMethod.getDefaultValue();
-
-               if (defaultValue == null)
-               {
-                  throw new UnsupportedOperationException(methodName + " does not have a default value");
-               }
-
-               return defaultValue;
+               value = getValue(methodName);
+               this.values.put(methodName, (value == null) ? NULL_VALUE : value);
+            }
+            else if (value == NULL_VALUE)
+            {
+               return null;
             }
 
-            // ...otherwise parse it
+            // Arrays are mutable, so (like the JDK's annotations) never hand out the cached instance
 
-            return parse(literalValue, annotationMethod.getReturnType());
+            return cloneArray(value);
          }
          catch (Exception e)
          {
@@ -667,6 +783,82 @@ public class ForgePropertyStyle
       // Private methods
       //
 
+      /**
+       * Returns the value of the given member: either its literal value, parsed, or its default value.
+       */
+
+      private Object getValue(String methodName) throws Exception
+      {
+         // If no value, return the default...
+
+         java.lang.reflect.Method annotationMethod = getMember(this.annotationClass, methodName);
+         String literalValue = this.annotationSource.getLiteralValue(methodName);
+
+         if (literalValue == null)
+         {
+            Object defaultValue = annotationMethod.getDefaultValue();
+
+            if (defaultValue == null)
+            {
+               throw new UnsupportedOperationException(methodName + " does not have a default value");
+            }
+
+            return defaultValue;
+         }
+
+         // ...otherwise parse it
+
+         return parse(literalValue, annotationMethod.getReturnType());
+      }
+
+      /**
+       * Looks up the given parameterless member of the given annotation type, memoizing the members of each type.
+       */
+
+      private static java.lang.reflect.Method getMember(Class<?> annotationClass, String methodName)
+               throws NoSuchMethodException
+      {
+         Map<String, java.lang.reflect.Method> members = ANNOTATION_MEMBERS.get(annotationClass);
+
+         if (members == null)
+         {
+            members = CollectionUtils.newHashMap();
+
+            for (java.lang.reflect.Method method : annotationClass.getMethods())
+            {
+               if (method.getParameterTypes().length == 0)
+               {
+                  members.put(method.getName(), method);
+               }
+            }
+
+            ANNOTATION_MEMBERS.put(annotationClass, members);
+         }
+
+         java.lang.reflect.Method member = members.get(methodName);
+
+         if (member == null)
+         {
+            throw new NoSuchMethodException(annotationClass.getName() + "." + methodName);
+         }
+
+         return member;
+      }
+
+      private static Object cloneArray(Object value)
+      {
+         if (!value.getClass().isArray())
+         {
+            return value;
+         }
+
+         int length = Array.getLength(value);
+         Object clone = Array.newInstance(value.getClass().getComponentType(), length);
+         System.arraycopy(value, 0, clone, 0, length);
+
+         return clone;
+      }
+
       /**
        * Parses the given literal value into the given returnType. Supports all standard annotation types (JLS 9.7).
        */
@@ -0,0 +1,199 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.forge.scaffold.spring.metawidget.inspector.propertystyle;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jboss.forge.parser.java.JavaSource;
+import org.jboss.forge.project.Project;
+import org.jboss.forge.project.facets.JavaSourceFacet;
+import org.jboss.forge.resources.java.JavaResource;
+
+/**
+ * Per-project cache of parsed <tt>JavaSource</tt> objects, keyed by fully-qualified type name.
+ * <p>
+ * Each entry remembers the last-modified time (and length) of the file it was parsed from, and is reparsed if either
+ * changes. Types
+ * that are not Forge sources (such as <tt>java.lang.String</tt>) are cached too, so that they are not looked up again
+ * until a source file for them appears. Cached sources are shared between threads and must be treated as read-only.
+ */
+
+public class JavaSourceCache
+{
+   //
+   // Private statics
+   //
+
+   private static final String PROJECT_ATTRIBUTE = JavaSourceCache.class.getName();
+
+   //
+   // Private members
+   //
+
+   private final Project project;
+
+   private final Map<String, CachedSource> sources = new ConcurrentHashMap<String, CachedSource>();
+
+   //
+   // Constructor
+   //
+
+   private JavaSourceCache(final Project project)
+   {
+      this.project = project;
+   }
+
+   //
+   // Public statics
+   //
+
+   /**
+    * Returns the cache for the given project, creating it if necessary.
+    */
+
+   public static JavaSourceCache forProject(final Project project)
+   {
+      // Stored on the project (rather than in a static map) so that it lives and dies with the project
+
+      synchronized (project)
+      {
+         JavaSourceCache cache = (JavaSourceCache) project.getAttribute(PROJECT_ATTRIBUTE);
+
+         if (cache == null)
+         {
+            cache = new JavaSourceCache(project);
+            project.setAttribute(PROJECT_ATTRIBUTE, cache);
+         }
+
+         return cache;
+      }
+   }
+
+   //
+   // Public methods
+   //
+
+   /**
+    * Returns the parsed source for the given type, or null if it is not a Forge-based type.
+    */
+
+   public JavaSource<?> getJavaSource(final String type)
+   {
+      JavaSourceFacet javaSourceFacet = this.project.getFacet(JavaSourceFacet.class);
+      JavaResource resource;
+
+      try
+      {
+         resource = javaSourceFacet.getJavaResource(type);
+      }
+      catch (FileNotFoundException e)
+      {
+         return null;
+      }
+
+      // A missing file has a lastModified of 0, so negative entries stay valid until the file is created
+
+      File file = resource.getUnderlyingResourceObject();
+      long lastModified = file.lastModified();
+      long length = file.length();
+      CachedSource cached = this.sources.get(type);
+
+      // Also compare lengths, as some filesystems only record lastModified to the second
+
+      if (cached != null && cached.lastModified == lastModified && cached.length == length)
+      {
+         return cached.source;
+      }
+
+      JavaSource<?> source = null;
+
+      if (lastModified != 0)
+      {
+         try
+         {
+            source = resource.getJavaSource();
+         }
+         catch (FileNotFoundException e)
+         {
+            // Not a Forge-based type
+         }
+      }
+
+      this.sources.put(type, new CachedSource(source, lastModified, length));
+      return source;
+   }
+
+   /**
+    * Returns the last-modified time and length of the file behind every type looked up so far (including types that
+    * were not found, with a last-modified time of 0), keyed by type. Anything computed from the looked-up sources is
+    * still valid for as long as these are unchanged.
+    */
+
+   public Map<String, long[]> getFileStamps()
+   {
+      Map<String, long[]> stamps = new HashMap<String, long[]>();
+
+      for (Map.Entry<String, CachedSource> entry : this.sources.entrySet())
+      {
+         stamps.put(entry.getKey(), new long[] { entry.getValue().lastModified, entry.getValue().length });
+      }
+
+      return stamps;
+   }
+
+   public void clear()
+   {
+      this.sources.clear();
+   }
+
+   //
+   // Inner classes
+   //
+
+   private static class CachedSource
+   {
+      //
+      // Private members
+      //
+
+      final JavaSource<?> source;
+
+      final long lastModified;
+
+      final long length;
+
+      //
+      // Constructor
+      //
+
+      CachedSource(final JavaSource<?> source, final long lastModified, final long length)
+      {
+         this.source = source;
+         this.lastModified = lastModified;
+         this.length = length;
+      }
+   }
+}
@@ -24,9 +24,9 @@ package org.jboss.forge.scaffold.spring.metawidget.layout;
 
 import java.util.Map;
 
+import org.jboss.forge.scaffold.spring.EntityDescriptor;
 import org.jboss.forge.scaffold.spring.metawidget.widgetbuilder.CoreUrl;
 import org.jboss.forge.scaffold.spring.metawidget.widgetbuilder.HtmlAnchor;
-import org.jvnet.inflector.Noun;
 import org.metawidget.statically.StaticXmlStub;
 import org.metawidget.statically.StaticXmlWidget;
 import org.metawidget.statically.html.StaticHtmlMetawidget;
@@ -63,7 +63,7 @@ public class TableCellLinkLayout
         HtmlAnchor link = new HtmlAnchor();
         CoreUrl curl = new CoreUrl();
 
-        String entityPlural = Noun.pluralOf(StaticJspUtils.unwrapExpression(metawidget.getAttribute("value").toLowerCase()));
+        String entityPlural = EntityDescriptor.pluralOf(StaticJspUtils.unwrapExpression(metawidget.getAttribute("value").toLowerCase()));
         curl.setValue("/" + entityPlural + "/${" + StaticJspUtils.unwrapExpression(metawidget.getAttribute("value")) + ".id}");
         link.putAttribute("href", curl.toString());
         link.getChildren().add(widget);
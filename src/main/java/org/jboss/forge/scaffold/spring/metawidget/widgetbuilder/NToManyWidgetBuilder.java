@@ -27,7 +27,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
-import org.jvnet.inflector.Noun;
+import org.jboss.forge.scaffold.spring.EntityDescriptor;
 import org.metawidget.statically.StaticWidget;
 import org.metawidget.statically.StaticXmlMetawidget;
 import org.metawidget.statically.StaticXmlStub;
@@ -37,9 +37,7 @@ import org.metawidget.statically.html.widgetbuilder.HtmlTableRow;
 import org.metawidget.statically.jsp.StaticJspUtils;
 import org.metawidget.statically.jsp.widgetbuilder.CoreForEach;
 import org.metawidget.statically.jsp.widgetbuilder.JspWidgetBuilder;
-import org.metawidget.util.ClassUtils;
 import org.metawidget.util.WidgetBuilderUtils;
-import org.metawidget.util.simple.StringUtils;
 
 /**
  * Builds widgets with Forge-specific behaviours, such as create/deletion support.
@@ -150,8 +148,8 @@ public class NToManyWidgetBuilder
 
         if (componentType != null)
         {
-            String controllerName = StringUtils.decapitalize(ClassUtils.getSimpleName(componentType));
-            controllerName = Noun.pluralOf(controllerName).toLowerCase();
+            String controllerName = EntityDescriptor.forName(componentType).getCcName();
+            controllerName = EntityDescriptor.pluralOf(controllerName).toLowerCase();
 
             // Create a link...
 
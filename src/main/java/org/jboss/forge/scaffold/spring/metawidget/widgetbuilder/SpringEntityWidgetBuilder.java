@@ -28,11 +28,12 @@ import static org.metawidget.inspector.spring.SpringInspectionResultConstants.*;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.jboss.forge.env.Configuration;
 import org.jboss.forge.parser.java.util.Strings;
+import org.jboss.forge.scaffold.spring.EntityDescriptor;
 import org.jboss.forge.scaffold.spring.SpringScaffold;
-import org.jvnet.inflector.Noun;
 import org.metawidget.iface.MetawidgetException;
 import org.metawidget.statically.BaseStaticXmlWidget;
 import org.metawidget.statically.StaticXmlStub;
@@ -65,6 +66,17 @@ public class SpringEntityWidgetBuilder
     // Private statics
     //
 
+    /**
+     * Whether each external config can configure a nested <code>StaticJspMetawidget</code>. Configs are classpath
+     * resources, so this never changes once resolved.
+     */
+
+    private static final Map<String, Boolean> NESTED_JSP_CONFIGS = new ConcurrentHashMap<String, Boolean>();
+
+    //
+    // Private members
+    //
+
     /**
      * Current Forge configuration.  Useful to retrieve <code>targetDir</code>.
      */
@@ -111,7 +123,7 @@ public class SpringEntityWidgetBuilder
                 }
 
                 FormSelectTag select = new FormSelectTag();
-                select.putAttribute("items", Noun.pluralOf(attributes.get(NAME)));
+                select.putAttribute("items", EntityDescriptor.pluralOf(attributes.get(NAME)));
                 select.putAttribute("path", attributes.get(NAME));
 
                 String itemLabel = attributes.get(SPRING_LOOKUP_ITEM_LABEL);
@@ -134,14 +146,13 @@ public class SpringEntityWidgetBuilder
                     select.getChildren().add(emptyOption);
                 }
 
-                int lastIndexOf = attributes.get(TYPE).lastIndexOf(StringUtils.SEPARATOR_DOT_CHAR);
-                String controllerName = Noun.pluralOf(attributes.get(TYPE).substring(lastIndexOf + 1)).toLowerCase();
+                EntityDescriptor descriptor = EntityDescriptor.forName(attributes.get(TYPE));
                 CoreUrl curl = new CoreUrl();
-                curl.setValue(getTargetDir() + "/" + controllerName);
+                curl.setValue(getTargetDir() + "/" + descriptor.getControllerPath());
     
                 HtmlAnchor link = new HtmlAnchor();
                 link.putAttribute("href", curl.toString());
-                link.putAttribute("value", "Create New " + StringUtils.uncamelCase(attributes.get(TYPE).substring(lastIndexOf + 1)));
+                link.putAttribute("value", "Create New " + descriptor.getLabel());
 
                 HtmlTableCell lookupCell = new HtmlTableCell();
                 lookupCell.getChildren().add(select);
@@ -201,9 +212,21 @@ public class SpringEntityWidgetBuilder
                 return null;
             }
 
+            EntityDescriptor descriptor;
+
+            if (TRUE.equals(attributes.get(N_TO_MANY)))
+            {
+                descriptor = EntityDescriptor.forName(attributes.get(PARAMETERIZED_TYPE));
+            }
+            else
+            {
+                descriptor = EntityDescriptor.forName(attributes.get(TYPE));
+            }
+
             // Use a dropdown menu with a create button.
 
             FormSelectTag select = new FormSelectTag();
+            boolean typeahead = isTypeaheadLookups();
 
             if (TRUE.equals(attributes.get(ONE_TO_ONE)) || (!TRUE.equals((attributes.get(N_TO_MANY)))
                     && attributes.containsKey((REVERSE_PRIMARY_KEY_TYPE))))
@@ -220,11 +243,14 @@ public class SpringEntityWidgetBuilder
                 options.putAttribute("itemValue", "id");
                 select.getChildren().add(options);
             }
+            else if (typeahead)
+            {
+                select.putAttribute("items", StaticJspUtils.wrapExpression(attributes.get(NAME)));
+                select.putAttribute("itemValue", "id");
+            }
             else
             {
-                int lastIndexOf = attributes.get(PARAMETERIZED_TYPE).lastIndexOf(StringUtils.SEPARATOR_DOT_CHAR);
-                String expression = attributes.get(PARAMETERIZED_TYPE).substring(lastIndexOf + 1);
-                select.putAttribute("items", StaticJspUtils.wrapExpression(Noun.pluralOf(expression).toLowerCase()));
+                select.putAttribute("items", StaticJspUtils.wrapExpression(descriptor.getControllerPath()));
                 select.putAttribute("itemValue", "id");
             }
 
@@ -233,27 +259,22 @@ public class SpringEntityWidgetBuilder
                 select.putAttribute("multiple", "multiple");
             }
 
-            // TODO: Find a way to direct this link to a create form for the top entity, not the member.
-
-            String entityName = new String();
+            // With typeahead lookups, the controller only lists the current choices. typeahead.js adds the others
+            // as the user types, from the related entity's lookup endpoint
 
-            if (TRUE.equals(attributes.get(N_TO_MANY)))
+            if (typeahead)
             {
-                int lastIndexOf = attributes.get(PARAMETERIZED_TYPE).lastIndexOf(StringUtils.SEPARATOR_DOT_CHAR);
-                entityName = attributes.get(PARAMETERIZED_TYPE).substring(lastIndexOf + 1);
-            }
-            else
-            {
-                int lastIndexOf = attributes.get(TYPE).lastIndexOf(StringUtils.SEPARATOR_DOT_CHAR);
-                entityName = attributes.get(TYPE).substring(lastIndexOf + 1);
+                select.putAttribute("data-lookup", "${pageContext.request.contextPath}" + getTargetDir()
+                        + descriptor.getControllerPath() + "/lookup");
             }
 
-            String controllerName = Noun.pluralOf(entityName).toLowerCase();
+            // TODO: Find a way to direct this link to a create form for the top entity, not the member.
+
             CoreUrl curl = new CoreUrl();
-            curl.setValue(getTargetDir() + controllerName + "/create");
+            curl.setValue(getTargetDir() + descriptor.getControllerPath() + "/create");
 
             HtmlAnchor createLink = new HtmlAnchor();
-            createLink.setTextContent("Create New " + StringUtils.uncamelCase(entityName));
+            createLink.setTextContent("Create New " + descriptor.getLabel());
             createLink.putAttribute("href", curl.toString());
 
             if (TRUE.equals(attributes.get("search")))
@@ -277,14 +298,9 @@ public class SpringEntityWidgetBuilder
     
                 // If using an external config, lookup StaticJspMetawidget within it
     
-                if ( metawidget.getConfig() != null )
+                if ( metawidget.getConfig() != null && supportsNestedJspMetawidget( metawidget.getConfig() ) )
                 {
                     nestedMetawidget.setConfig( metawidget.getConfig() );
-                    try {
-                        nestedMetawidget.getWidgetProcessors();
-                    } catch ( MetawidgetException e ) {
-                        nestedMetawidget.setConfig( null );
-                    }
                 }
     
                 return nestedMetawidget;
@@ -318,6 +334,11 @@ public class SpringEntityWidgetBuilder
         return target;
     }
 
+    private boolean isTypeaheadLookups()
+    {
+        return this.config.getBoolean(SpringScaffold.TYPEAHEAD_LOOKUPS, false);
+    }
+
     private boolean widgetIsLink(BaseStaticXmlWidget widget)
     {
         if (widget instanceof HtmlAnchor)
@@ -332,4 +353,34 @@ public class SpringEntityWidgetBuilder
 
         return false;
     }
+
+    /**
+     * Resolves, once per config, whether it can configure a <code>StaticJspMetawidget</code> (rather than catching a
+     * <code>MetawidgetException</code> for every collection property).
+     */
+
+    private boolean supportsNestedJspMetawidget(String config)
+    {
+        Boolean supported = NESTED_JSP_CONFIGS.get(config);
+
+        if (supported == null)
+        {
+            StaticJspMetawidget probe = new StaticJspMetawidget();
+            probe.setConfig(config);
+
+            try
+            {
+                probe.getWidgetProcessors();
+                supported = Boolean.TRUE;
+            }
+            catch (MetawidgetException e)
+            {
+                supported = Boolean.FALSE;
+            }
+
+            NESTED_JSP_CONFIGS.put(config, supported);
+        }
+
+        return supported;
+    }
 }
@@ -1,12 +1,17 @@
 package org.jboss.forge.spec.spring.mvc.impl;
 
+import java.io.File;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.inject.Inject;
 
@@ -51,6 +56,18 @@ public class SpringFacetImpl extends BaseFacet implements SpringFacet
 
     private ServletMappingHelper servletMappingHelper = new ServletMappingHelper();
 
+    /**
+     * The parsed web.xml, and an index of its servlet mappings. Rebuilt whenever web.xml changes on disk.
+     */
+
+    private volatile WebXmlIndex webXmlIndex;
+
+    /**
+     * A tree of each web root's directories and files, keyed by the web root's fully qualified name.
+     */
+
+    private final Map<String, WebPathTrie> webPathTries = new ConcurrentHashMap<String, WebPathTrie>();
+
     private static final String SPRING_VERSION = "3.1.1.RELEASE";
     private static final String SPRING_DISPATCHER_SERVLET = "org.springframework.web.servlet.DispatcherServlet";
 
@@ -189,9 +206,7 @@ public class SpringFacetImpl extends BaseFacet implements SpringFacet
     @Override
     public List<String> getSpringServletMappings()
     {
-        ServletFacet facet = project.getFacet(ServletFacet.class);
-        WebAppDescriptor webXml = facet.getConfig();
-        return getExplicitSpringServletMappings(webXml);
+        return new ArrayList<String>(getWebXmlIndex().springMappings);
     }
 
     private List<String> getExplicitSpringServletMappings(final WebAppDescriptor webXml)
@@ -227,6 +242,7 @@ public class SpringFacetImpl extends BaseFacet implements SpringFacet
         if (webXml != newWebXml)
         {
             facet.getConfigFile().setContents(newWebXml);
+            this.webXmlIndex = null;
         }
     }
 
@@ -246,6 +262,7 @@ public class SpringFacetImpl extends BaseFacet implements SpringFacet
         servlet.initParam("contextConfigLocation", context);
         servlet.loadOnStartup(1);
         serv.saveConfig(webXml);
+        this.webXmlIndex = null;
     }
 
     @Override
@@ -263,26 +280,13 @@ public class SpringFacetImpl extends BaseFacet implements SpringFacet
         servlet.initParam("contextConfigLocation", contextFile);
         servlet.loadOnStartup(1);
         serv.saveConfig(webXml);
+        this.webXmlIndex = null;
     }
 
     @Override
     public boolean hasServlet(String servletMapping)
     {
-        ServletFacet serv = project.getFacet(ServletFacet.class);
-        WebAppDescriptor webXml = serv.getConfig();
-
-        for (ServletDef servlet : webXml.getServlets())
-        {
-            for (ServletMappingDef mapping : servlet.getMappings())
-            {
-                if (mapping.getUrlPatterns().contains(servletMapping))
-                {
-                    return true;
-                }
-            }
-        }
-
-        return false;
+        return getWebXmlIndex().urlPatterns.contains(servletMapping);
     }
 
     @Override
@@ -312,18 +316,18 @@ public class SpringFacetImpl extends BaseFacet implements SpringFacet
     {
         List<String> results = new ArrayList<String>();
 
-        if (getResourceForWebPath(path) == null)
+        // Build a view ID for every Spring mapping, whether or not the path resolves to a resource.  This used to be
+        // conditional on getResourceForWebPath(path) returning null, which it always did
+
+        List<String> mappings = getSpringServletMappings();
+
+        for (String mapping : mappings)
         {
-            List<String> mappings = getSpringServletMappings();
+            String viewId = buildSpringViewId(mapping, path);
 
-            for (String mapping : mappings)
+            if (!results.contains(viewId))
             {
-                String viewId = buildSpringViewId(mapping, path);
-
-                if (!results.contains(viewId))
-                {
-                    results.add(viewId);
-                }
+                results.add(viewId);
             }
         }
 
@@ -333,82 +337,45 @@ public class SpringFacetImpl extends BaseFacet implements SpringFacet
     @Override
     public Resource<?> getResourceForWebPath(String path)
     {
-        if (path != null)
+        if (path == null)
         {
-            WebResourceFacet web = project.getFacet(WebResourceFacet.class);
-            List<DirectoryResource> webRootDirectories = web.getWebRootDirectories();
-
-            boolean matches = false;
-
-            for (String mapping : getSpringServletMappings())
-            {
-                Matcher matcher = ServletUtil.mappingToRegex(mapping).matcher(path);
-
-                if (matcher.matches())
-                {
-                    path = matcher.group(1);
-                    matches = true;
-                    break;
-                }
-
-                while (path.startsWith("/"))
-                {
-                    path = path.substring(1);
-                }
-
-                if (!matches)
-                {
-                    return null;
-                }
-
-                List<String> strings = Arrays.asList(path.split("/"));
+            return null;
+        }
 
-                for (DirectoryResource d : webRootDirectories)
-                {
-                    Queue<String> queue = new LinkedList<String>();
-                    queue.addAll(strings);
+        String matched = null;
 
-                    Resource<?> temp = d;
+        for (Pattern mapping : getWebXmlIndex().springMappingPatterns)
+        {
+            Matcher matcher = mapping.matcher(path);
 
-                    while (queue.size() > 1)
-                    {
-                        Resource<?> child = temp.getChild(queue.remove());
+            if (matcher.matches())
+            {
+                matched = matcher.group(1);
+                break;
+            }
+        }
 
-                        if (child != null && child.exists())
-                        {
-                            temp = child;
-                        }
-                        else
-                        {
-                            break;
-                        }
+        if (matched == null)
+        {
+            return null;
+        }
 
-                        if (queue.isEmpty())
-                        {
-                            return child;
-                        }
-                    }
+        while (matched.startsWith("/"))
+        {
+            matched = matched.substring(1);
+        }
 
-                    if (temp != null)
-                    {
-                        String name = queue.remove();
-                        Resource<?> child = null;
+        List<String> segments = Arrays.asList(matched.split("/"));
+        WebResourceFacet web = project.getFacet(WebResourceFacet.class);
 
-                        if (name.endsWith(".jsp"))
-                        {
-                            child = temp.getChild(name);
-                        }
-                        else
-                        {
-                            child = temp.getChild(name + ".jsp");
-                        }
+        for (DirectoryResource d : web.getWebRootDirectories())
+        {
+            WebPathTrie trie = getWebPathTrie(d);
+            File file = trie.resolve(segments);
 
-                        if ((child != null) && child.exists())
-                        {
-                            return child;
-                        }
-                    }
-                }
+            if (file != null)
+            {
+                return d.getChild(file.getAbsolutePath().substring(trie.getWebRoot().getAbsolutePath().length() + 1));
             }
         }
 
@@ -435,6 +402,45 @@ public class SpringFacetImpl extends BaseFacet implements SpringFacet
         return APPLICATION_CONTEXT_LOCATION;
     }
 
+    /**
+     * Returns the index of the project's web.xml, parsing it again only if it has changed since it was last indexed.
+     */
+
+    protected WebXmlIndex getWebXmlIndex()
+    {
+        ServletFacet serv = project.getFacet(ServletFacet.class);
+        File file = (File) serv.getConfigFile().getUnderlyingResourceObject();
+        long lastModified = file.lastModified();
+        long length = file.length();
+
+        WebXmlIndex index = this.webXmlIndex;
+
+        if (index == null || index.lastModified != lastModified || index.length != length)
+        {
+            index = new WebXmlIndex(serv.getConfig(), lastModified, length);
+            this.webXmlIndex = index;
+        }
+
+        return index;
+    }
+
+    /**
+     * Returns the tree of the given web root, creating it the first time the web root is seen.
+     */
+
+    protected WebPathTrie getWebPathTrie(DirectoryResource webRoot)
+    {
+        WebPathTrie trie = this.webPathTries.get(webRoot.getFullyQualifiedName());
+
+        if (trie == null)
+        {
+            trie = new WebPathTrie((File) webRoot.getUnderlyingResourceObject());
+            this.webPathTries.put(webRoot.getFullyQualifiedName(), trie);
+        }
+
+        return trie;
+    }
+
     /**
      * Build a Spring view ID for the given resource path, assumes Spring servlet mappings begin with either '/' or '.'
      */
@@ -459,6 +465,55 @@ public class SpringFacetImpl extends BaseFacet implements SpringFacet
         return servletName;
     }
 
+    /**
+     * A parsed web.xml, together with every URL pattern it maps, and each Spring servlet mapping with its compiled
+     * pattern. Immutable once built.
+     */
+
+    protected class WebXmlIndex
+    {
+        final WebAppDescriptor descriptor;
+
+        final long lastModified;
+
+        final long length;
+
+        final Set<String> urlPatterns;
+
+        final List<String> springMappings;
+
+        final List<Pattern> springMappingPatterns;
+
+        WebXmlIndex(WebAppDescriptor descriptor, long lastModified, long length)
+        {
+            this.descriptor = descriptor;
+            this.lastModified = lastModified;
+            this.length = length;
+
+            Set<String> urlPatterns = new HashSet<String>();
+
+            for (ServletDef servlet : descriptor.getServlets())
+            {
+                for (ServletMappingDef mapping : servlet.getMappings())
+                {
+                    urlPatterns.addAll(mapping.getUrlPatterns());
+                }
+            }
+
+            List<String> springMappings = getExplicitSpringServletMappings(descriptor);
+            List<Pattern> springMappingPatterns = new ArrayList<Pattern>();
+
+            for (String mapping : springMappings)
+            {
+                springMappingPatterns.add(ServletUtil.mappingToRegex(mapping));
+            }
+
+            this.urlPatterns = Collections.unmodifiableSet(urlPatterns);
+            this.springMappings = Collections.unmodifiableList(springMappings);
+            this.springMappingPatterns = Collections.unmodifiableList(springMappingPatterns);
+        }
+    }
+
     public static class ServletMappingHelper
     {
         public static final String SPRING_SERVLET_PACKAGE = "org.springframework.web.servlet";
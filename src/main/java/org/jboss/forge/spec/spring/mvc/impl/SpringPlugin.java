@@ -21,22 +21,38 @@
  */
 package org.jboss.forge.spec.spring.mvc.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 import javax.enterprise.event.Event;
+import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 
+import org.jboss.forge.env.Configuration;
 import org.jboss.forge.parser.xml.Node;
 import org.jboss.forge.parser.xml.XMLParser;
 import org.jboss.forge.project.Project;
+import org.jboss.forge.project.dependencies.Dependency;
+import org.jboss.forge.project.dependencies.DependencyBuilder;
+import org.jboss.forge.project.dependencies.ScopeType;
+import org.jboss.forge.project.facets.DependencyFacet;
 import org.jboss.forge.project.facets.MetadataFacet;
 import org.jboss.forge.project.facets.PackagingFacet;
 import org.jboss.forge.project.facets.ResourceFacet;
 import org.jboss.forge.project.facets.WebResourceFacet;
 import org.jboss.forge.project.facets.events.InstallFacets;
 import org.jboss.forge.project.packaging.PackagingType;
+import org.jboss.forge.scaffold.spring.CountStrategy;
+import org.jboss.forge.scaffold.spring.ResidentScaffoldCache;
+import org.jboss.forge.scaffold.spring.ScaffoldTemplates;
+import org.jboss.forge.scaffold.spring.ScaffoldWatcher;
+import org.jboss.forge.scaffold.spring.SpringScaffold;
+import org.jboss.forge.scaffold.spring.metawidget.config.ForgeConfigReader;
 import org.jboss.forge.scaffold.util.ScaffoldUtil;
 import org.jboss.forge.shell.ShellMessages;
+import org.jboss.forge.shell.ShellPrintWriter;
 import org.jboss.forge.shell.ShellPrompt;
 import org.jboss.forge.shell.plugins.Alias;
 import org.jboss.forge.shell.plugins.Command;
@@ -79,8 +95,28 @@ public class SpringPlugin implements Plugin
    @Inject
    private ShellPrompt prompt;
 
+   @Inject
+   private Configuration config;
+
+   @Inject
+   private Instance<SpringScaffold> scaffold;
+
    private static final String XMLNS_PREFIX = "xmlns:";
 
+   private static final String PERSISTENCE_XML = "META-INF/persistence.xml";
+
+   private static final Dependency HIBERNATE_ENTITYMANAGER = DependencyBuilder.create("org.hibernate:hibernate-entitymanager:4.0.1.Final")
+               .setScopeType(ScopeType.PROVIDED);
+
+   /**
+    * The Infinispan region factory of JBoss AS7, whose <code>hibernate</code> cache container keeps entities and query
+    * results in local, in-JVM caches.
+    */
+
+   private static final String REGION_FACTORY = "org.jboss.as.jpa.hibernate4.infinispan.InfinispanRegionFactory";
+
+   private static final String REGION_PREFIX = "hibernate.cache.infinispan.";
+
    private TemplateResolver<ClassLoader> resolver;
 
    private String APPLICATION_CONTEXT_TEMPLATE = "scaffold/spring/applicationContext.xl";
@@ -304,6 +340,255 @@ public class SpringPlugin implements Plugin
        generateMVCContext(mvcContext, mvcPackage);
    }
 
+   @Command(value="resident", help="Keep Spring scaffolding caches warm between commands")
+   public void setResident(@Option(required=false, defaultValue="true", name="enable",
+                   description="Enable (or disable) resident mode") boolean enable, final PipeOut out)
+   {
+       this.config.setProperty(SpringScaffold.RESIDENT, enable);
+
+       if (enable)
+       {
+           SpringScaffold springScaffold = this.scaffold.get();
+           springScaffold.setProject(this.project);
+           springScaffold.warm();
+
+           ShellMessages.success(out, "Spring scaffolding is resident: templates, Metawidgets and inspection results are kept warm.");
+       }
+       else
+       {
+           ForgeConfigReader configReader = ForgeConfigReader.forProject(this.config, this.project);
+           ResidentScaffoldCache.forProject(this.project).clear(configReader.getInspectionResultCache());
+
+           ShellMessages.success(out, "Spring scaffolding is no longer resident.");
+       }
+   }
+
+   @Command(value="pagination", help="Choose how generated Spring controllers page through search results")
+   public void setPagination(@Option(required=false, defaultValue="true", name="keyset",
+                   description="Page by key, rather than by offset") boolean keyset, final PipeOut out)
+   {
+       this.config.setProperty(SpringScaffold.KEYSET_PAGINATION, keyset);
+
+       if (keyset)
+       {
+           ShellMessages.success(out, "Generated controllers will page by key: rescaffold your entities to apply.");
+       }
+       else
+       {
+           ShellMessages.success(out, "Generated controllers will page by offset: rescaffold your entities to apply.");
+       }
+   }
+
+   @Command(value="typeahead", help="Choose related entities in generated forms through a paged typeahead")
+   public void setTypeahead(@Option(required=false, defaultValue="true", name="enable",
+                   description="Enable (or disable) typeahead lookups") boolean enable, final PipeOut out)
+   {
+       this.config.setProperty(SpringScaffold.TYPEAHEAD_LOOKUPS, enable);
+
+       if (enable)
+       {
+           ShellMessages.success(out, "Generated forms will look up related entities as the user types: rescaffold your entities to apply.");
+       }
+       else
+       {
+           ShellMessages.success(out, "Generated forms will list every related entity: rescaffold your entities to apply.");
+       }
+   }
+
+   @Command(value="count-strategy", help="Choose how generated Spring search pages count their results")
+   public void setCountStrategy(@Option(required=true, name="strategy",
+                   description="EXACT, NONE, CACHED or ESTIMATED") String strategy,
+                   @Option(required=false, name="entity",
+                   description="Qualified name of the entity to use this strategy for (default: every entity)") String entity,
+                   @Option(required=false, name="ttl", description="Seconds to cache counts for, with CACHED") Integer ttl,
+                   @Option(required=false, name="estimateQuery",
+                   description="SQL estimating a table's row count, given its name as ?1, with ESTIMATED") String estimateQuery,
+                   final PipeOut out)
+   {
+       CountStrategy countStrategy;
+
+       try
+       {
+           countStrategy = CountStrategy.forName(strategy);
+       }
+       catch (IllegalArgumentException e)
+       {
+           ShellMessages.error(out, "Unknown count strategy '" + strategy + "': expected EXACT, NONE, CACHED or ESTIMATED");
+           return;
+       }
+
+       if (entity == null)
+       {
+           this.config.setProperty(SpringScaffold.COUNT_STRATEGY, countStrategy.name());
+       }
+       else
+       {
+           this.config.setProperty(SpringScaffold.COUNT_STRATEGY + "_" + entity, countStrategy.name());
+       }
+
+       if (ttl != null)
+       {
+           this.config.setProperty(SpringScaffold.COUNT_CACHE_TTL, ttl);
+       }
+
+       if (estimateQuery != null)
+       {
+           this.config.setProperty(SpringScaffold.COUNT_ESTIMATE_QUERY, estimateQuery);
+       }
+
+       ShellMessages.success(out, "Search pages of " + ((entity == null) ? "every entity" : entity) + " will count with "
+                   + countStrategy.name() + ": rescaffold to apply.");
+   }
+
+   @Command(value="cache", help="Keep an entity in Hibernate's second-level cache, and cache its generated queries")
+   public void setCache(@Option(required=true, name="entity",
+                   description="Qualified name of the entity to cache") String entity,
+                   @Option(required=false, defaultValue="true", name="enable",
+                   description="Enable (or disable) caching of the entity") boolean enable,
+                   @Option(required=false, defaultValue="10000", name="maxEntries",
+                   description="Most instances of the entity to keep in its cache region") int maxEntries,
+                   @Option(required=false, defaultValue="600", name="expiration",
+                   description="Seconds to keep each instance cached for (0 or less: until evicted)") int expiration,
+                   final PipeOut out)
+   {
+       List<String> cached = new ArrayList<String>();
+       String names = this.config.getString(SpringScaffold.SECOND_LEVEL_CACHE, "");
+
+       for (String name : names.split(","))
+       {
+           if (!name.trim().isEmpty() && !name.trim().equals(entity))
+           {
+               cached.add(name.trim());
+           }
+       }
+
+       if (enable)
+       {
+           cached.add(entity);
+       }
+
+       // Configure the entity's cache region, and the caches as a whole, in the persistence unit
+
+       ResourceFacet resources = project.getFacet(ResourceFacet.class);
+       Node persistence = XMLParser.parse(resources.getResource(PERSISTENCE_XML).getResourceInputStream());
+       Node unit = persistence.get("persistence-unit").get(0);
+       Node properties = unit.getSingle("properties");
+
+       if (properties == null)
+       {
+           properties = unit.createChild("properties");
+       }
+
+       String region = REGION_PREFIX + entity;
+
+       if (enable)
+       {
+           setProperty(properties, "hibernate.ejb.classcache." + entity, "transactional");
+           setProperty(properties, region + ".eviction.strategy", "LRU");
+           setProperty(properties, region + ".eviction.max_entries", String.valueOf(maxEntries));
+           setProperty(properties, region + ".expiration.lifespan",
+                       String.valueOf((expiration > 0) ? expiration * 1000L : -1L));
+       }
+       else
+       {
+           removeProperties(properties, Arrays.asList("hibernate.ejb.classcache." + entity, region + ".eviction.strategy",
+                       region + ".eviction.max_entries", region + ".expiration.lifespan"));
+       }
+
+       boolean secondLevelCache = !cached.isEmpty();
+       setProperty(properties, "hibernate.cache.use_second_level_cache", String.valueOf(secondLevelCache));
+       setProperty(properties, "hibernate.cache.use_query_cache", String.valueOf(secondLevelCache));
+       setProperty(properties, "hibernate.generate_statistics", String.valueOf(secondLevelCache));
+
+       if (secondLevelCache)
+       {
+           setProperty(properties, "hibernate.cache.region.factory_class", REGION_FACTORY);
+       }
+       else
+       {
+           removeProperties(properties, Arrays.asList("hibernate.cache.region.factory_class"));
+       }
+
+       resources.createResource(XMLParser.toXMLString(persistence).toCharArray(), PERSISTENCE_XML);
+
+       // Declare the bean that reports the hit rates of the cache regions, which needs Hibernate's statistics API
+
+       if (secondLevelCache)
+       {
+           MetadataFacet meta = project.getFacet(MetadataFacet.class);
+           SpringFacet spring = project.getFacet(SpringFacet.class);
+
+           if (resources.getResource(spring.getContextFileLocation()).exists())
+           {
+               Node beans = XMLParser.parse(resources.getResource(spring.getContextFileLocation()).getResourceInputStream());
+
+               if (!hasChild(beans, "cacheStatistics"))
+               {
+                   Node bean = new Node("bean", beans);
+                   bean.attribute("class", meta.getTopLevelPackage() + ".repo.CacheStatistics");
+                   bean.attribute("id", "cacheStatistics");
+
+                   resources.createResource(XMLParser.toXMLString(beans).toCharArray(), spring.getContextFileLocation());
+               }
+           }
+
+           project.getFacet(DependencyFacet.class).addDirectDependency(HIBERNATE_ENTITYMANAGER);
+       }
+
+       StringBuilder value = new StringBuilder();
+
+       for (String name : cached)
+       {
+           value.append((value.length() == 0) ? "" : ",").append(name);
+       }
+
+       this.config.setProperty(SpringScaffold.SECOND_LEVEL_CACHE, value.toString());
+
+       if (enable)
+       {
+           ShellMessages.success(out, entity + " will be kept in the second-level cache: rescaffold to cache its queries, then"
+                       + " GET /cacheStatistics for hit rates.");
+       }
+       else
+       {
+           ShellMessages.success(out, entity + " will no longer be cached: rescaffold to apply.");
+       }
+   }
+
+   @Command(value="scaffold-watch", help="Regenerate the scaffolding of entities as their sources change")
+   public void scaffoldWatch(@Option(required=false, name="targetDir", description="Target Directory") String targetDir,
+                   @Option(required=false, defaultValue="1000", name="interval",
+                   description="Milliseconds between checks for changed sources") int interval,
+                   @Option(required=false, defaultValue="500", name="quietPeriod",
+                   description="Milliseconds the sources must be unchanged for, before regenerating") int quietPeriod,
+                   @Option(required=false, defaultValue="false", name="stop", description="Stop watching") boolean stop,
+                   final PipeOut out)
+   {
+       if (stop)
+       {
+           if (ScaffoldWatcher.stop(this.project))
+           {
+               ShellMessages.success(out, "Stopped watching entity sources.");
+           }
+           else
+           {
+               ShellMessages.info(out, "Not watching entity sources.");
+           }
+
+           return;
+       }
+
+       if (targetDir == null)
+       {
+           targetDir = new String();
+       }
+
+       ShellPrintWriter writer = (this.prompt instanceof ShellPrintWriter) ? (ShellPrintWriter) this.prompt : null;
+       ScaffoldWatcher.start(new ScaffoldWatcher(this.scaffold.get(), this.project, targetDir, interval, quietPeriod, writer));
+
+       ShellMessages.success(out, "Watching entity sources. Run 'spring scaffold-watch --stop true' to stop.");
+   }
+
    protected void generateContextFiles(boolean overwrite, Map<Object, Object> context)
    {
        MetadataFacet meta = project.getFacet(MetadataFacet.class);
@@ -316,6 +601,7 @@ public class SpringPlugin implements Plugin
 
        context.put("projectName", meta.getProjectName());
        context.put("persistenceUnit", persistence.getConfig().listUnits().get(0).getName());
+       context.put("secondLevelCache", !this.config.getString(SpringScaffold.SECOND_LEVEL_CACHE, "").isEmpty());
        context.put("mvcContextFile", filename);
 
        ScaffoldUtil.createOrOverwrite(this.prompt, resources.getResource("META-INF/spring/applicationContext.xml"),
@@ -328,17 +614,17 @@ public class SpringPlugin implements Plugin
    {
        if (applicationContextTemplate == null)
        {
-           applicationContextTemplate = compiler.compile(APPLICATION_CONTEXT_TEMPLATE);
+           applicationContextTemplate = ScaffoldTemplates.compile(compiler, APPLICATION_CONTEXT_TEMPLATE);
        }
 
        if (mvcContextTemplate == null)
        {
-           mvcContextTemplate = compiler.compile(MVC_CONTEXT_TEMPLATE);
+           mvcContextTemplate = ScaffoldTemplates.compile(compiler, MVC_CONTEXT_TEMPLATE);
        }
 
        if (webXmlTemplate == null)
        {
-           webXmlTemplate = compiler.compile(WEB_XML_TEMPLATE);
+           webXmlTemplate = ScaffoldTemplates.compile(compiler, WEB_XML_TEMPLATE);
        }
    }
 
@@ -527,6 +813,31 @@ public class SpringPlugin implements Plugin
        return false;
    }
 
+   private void setProperty(Node properties, String name, String value)
+   {
+       for (Node property : properties.get("property"))
+       {
+           if (name.equals(property.getAttribute("name")))
+           {
+               property.attribute("value", value);
+               return;
+           }
+       }
+
+       properties.createChild("property").attribute("name", name).attribute("value", value);
+   }
+
+   private void removeProperties(Node properties, List<String> names)
+   {
+       for (Node property : properties.get("property"))
+       {
+           if (names.contains(property.getAttribute("name")))
+           {
+               properties.removeChild(property);
+           }
+       }
+   }
+
    private String processTargetDir(String targetDir)
    {
        targetDir = (targetDir.startsWith("/")) ? targetDir.substring(1) : targetDir;
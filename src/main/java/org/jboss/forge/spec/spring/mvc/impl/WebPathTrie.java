@@ -0,0 +1,205 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.forge.spec.spring.mvc.impl;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An in-memory tree of the directories and files beneath a web root, used to resolve web paths without creating a
+ * <code>Resource</code>, and checking it exists, for every path segment.
+ * <p>
+ * Directories are listed lazily, the first time a path passes through them, and listed again only when their
+ * modification time changes (which happens whenever an entry is added to, or removed from, them). An entry that is not
+ * in a directory's listing is checked for on disk before giving up, so entries created since the listing (within the
+ * same timestamp tick) are still found.
+ */
+
+public class WebPathTrie
+{
+    //
+    // Private members
+    //
+
+    private final Node root;
+
+    //
+    // Constructor
+    //
+
+    public WebPathTrie(File webRoot)
+    {
+        this.root = new Node(webRoot);
+    }
+
+    //
+    // Public methods
+    //
+
+    public File getWebRoot()
+    {
+        return this.root.directory;
+    }
+
+    /**
+     * Resolves the given path segments to a file beneath the web root. All but the last segment name directories. The
+     * last names a file, with or without its <code>.jsp</code> extension.
+     *
+     * @return the file, or null if there is no such file
+     */
+
+    public File resolve(List<String> segments)
+    {
+        if (segments.isEmpty())
+        {
+            return null;
+        }
+
+        Node node = this.root;
+
+        for (int loop = 0, length = segments.size() - 1; loop < length; loop++)
+        {
+            node = node.getDirectory(segments.get(loop));
+
+            if (node == null)
+            {
+                return null;
+            }
+        }
+
+        String name = segments.get(segments.size() - 1);
+
+        if (!name.endsWith(".jsp"))
+        {
+            name += ".jsp";
+        }
+
+        return node.getFile(name);
+    }
+
+    //
+    // Inner classes
+    //
+
+    private static class Node
+    {
+        final File directory;
+
+        private long lastModified = -1;
+
+        private Map<String, Node> directories;
+
+        private Set<String> files;
+
+        Node(File directory)
+        {
+            this.directory = directory;
+        }
+
+        synchronized Node getDirectory(String name)
+        {
+            refresh();
+
+            Node node = this.directories.get(name);
+
+            if (node == null)
+            {
+                File directory = new File(this.directory, name);
+
+                if (directory.isDirectory())
+                {
+                    node = new Node(directory);
+                    this.directories.put(name, node);
+                }
+            }
+
+            return node;
+        }
+
+        synchronized File getFile(String name)
+        {
+            refresh();
+
+            File file = new File(this.directory, name);
+
+            if (this.files.contains(name))
+            {
+                return file;
+            }
+
+            if (file.isFile())
+            {
+                this.files.add(name);
+                return file;
+            }
+
+            return null;
+        }
+
+        /**
+         * Lists this directory again if it has changed since it was last listed, keeping the nodes of any
+         * sub-directories that are still there.
+         */
+
+        private void refresh()
+        {
+            long modified = this.directory.lastModified();
+
+            if (this.files != null && modified == this.lastModified)
+            {
+                return;
+            }
+
+            Map<String, Node> directories = new HashMap<String, Node>();
+            Set<String> files = new HashSet<String>();
+            File[] children = this.directory.listFiles();
+
+            if (children != null)
+            {
+                for (File child : children)
+                {
+                    String name = child.getName();
+
+                    if (child.isDirectory())
+                    {
+                        Node existing = (this.directories == null) ? null : this.directories.get(name);
+                        directories.put(name, (existing == null) ? new Node(child) : existing);
+                    }
+                    else
+                    {
+                        files.add(name);
+                    }
+                }
+            }
+
+            this.directories = directories;
+            this.files = files;
+            this.lastModified = modified;
+        }
+    }
+}
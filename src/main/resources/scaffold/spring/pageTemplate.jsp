@@ -12,7 +12,8 @@
 		<link rel="icon" href="<c:url value="/static/favicon.ico"/>"/>
 		<link rel="stylesheet" type="text/css" href="<c:url value="/static/resources/bootstrap.css"/>"/>
 		<link rel="stylesheet" type="text/css" href="<c:url value="/static/resources/forge-style.css"/>"/>
-	</head>
+@if{typeahead}		<script type="text/javascript" src="<c:url value="/static/resources/typeahead.js"/>"></script>
+@end{}	</head>
 
 	<body>
 	
@@ -33,14 +33,24 @@
 	</tbody>
 </table>
 
-<span class="paginator">
+@if{keysetPagination}<span class="paginator">
+	<c:if test="$${previous}">
+		<a class="btn btn-primary" href="<c:url value="/@{entityPlural.toLowerCase()}?before=$${firstKey}&max=$${max}"/>">Previous</a>
+	</c:if>
+
+	<c:if test="$${next}">
+		<a class="btn btn-primary" href="<c:url value="/@{entityPlural.toLowerCase()}?after=$${lastKey}&max=$${max}"/>">Next</a>
+	</c:if>
+</span>
+@else{}<span class="paginator">
 	<c:if test="$${current > 1}">
 		<a class="btn btn-primary" href="<c:url value="/@{entityPlural.toLowerCase()}?first=$${(current-2)*max}&max=$${max}"/>">Previous</a>
 	</c:if>
 
-	<span>$${first} to $${last} (of $${count})</span>
+	<span>$${first} to $${last}@if{countStrategy != 'NONE'} (of @if{countStrategy == 'ESTIMATED'}about @end{}$${count})@end{}</span>
 
-	<c:if test="$${count > current*max}">
+	<c:if test="$${@if{detectNextPage}next@else{}count > current*max@end{}}">
 		<a class="btn btn-primary" href="<c:url value="/@{entityPlural.toLowerCase()}?first=$${current*max}&max=$${max}"/>">Next</a>
 	</c:if>
 </span>
+@end{}
\ No newline at end of file
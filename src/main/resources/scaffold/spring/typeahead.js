@@ -0,0 +1,125 @@
+/*
+ * Generated by Forge
+ *
+ * Turns each <select data-lookup="..."> into a typeahead. The select only lists the current choices: as the user
+ * types, matching entities are fetched from the data-lookup URL (a JSON array of {id, label}) a page at a time. A full
+ * page ends with a 'More...' item that fetches the next one. Choosing a match adds it to the select.
+ */
+
+(function() {
+
+	var DELAY = 250;
+	var MAX = 10;
+
+	function attach(select) {
+
+		var input = document.createElement('input');
+		input.type = 'text';
+		input.className = 'typeahead';
+		input.setAttribute('autocomplete', 'off');
+		input.setAttribute('placeholder', 'Type to search');
+
+		var results = document.createElement('ul');
+		results.className = 'typeahead-results';
+
+		select.parentNode.insertBefore(input, select);
+		select.parentNode.insertBefore(results, select);
+
+		var timer = null;
+		var request = null;
+
+		input.onkeyup = function() {
+
+			clearTimeout(timer);
+			timer = setTimeout(function() {
+				search(input.value, 0);
+			}, DELAY);
+		};
+
+		function search(query, first) {
+
+			if (request !== null) {
+				request.abort();
+			}
+
+			var current = request = new XMLHttpRequest();
+			current.open('GET', select.getAttribute('data-lookup') + '?first=' + first + '&max=' + MAX + '&q='
+					+ encodeURIComponent(query), true);
+			current.onreadystatechange = function() {
+
+				if (current.readyState === 4 && current.status === 200) {
+					show(query, first, JSON.parse(current.responseText));
+				}
+			};
+			current.send(null);
+		}
+
+		function show(query, first, matches) {
+
+			// The first page replaces the results, later pages replace the 'More' item
+
+			if (first === 0) {
+				results.innerHTML = '';
+			} else if (results.lastChild !== null) {
+				results.removeChild(results.lastChild);
+			}
+
+			for (var loop = 0; loop < matches.length; loop++) {
+				var item = document.createElement('li');
+				item.appendChild(document.createTextNode(matches[loop].label));
+				item.onclick = choose(matches[loop]);
+				results.appendChild(item);
+			}
+
+			if (matches.length === MAX) {
+				var more = document.createElement('li');
+				more.className = 'typeahead-more';
+				more.appendChild(document.createTextNode('More...'));
+				more.onclick = function() {
+					search(query, first + MAX);
+				};
+				results.appendChild(more);
+			}
+		}
+
+		function choose(match) {
+
+			return function() {
+
+				var option = null;
+
+				for (var loop = 0; loop < select.options.length; loop++) {
+					if (select.options[loop].value === String(match.id)) {
+						option = select.options[loop];
+					}
+				}
+
+				if (option === null) {
+					option = new Option(match.label, match.id);
+					select.options[select.options.length] = option;
+				}
+
+				option.selected = true;
+				results.innerHTML = '';
+				input.value = '';
+			};
+		}
+	}
+
+	function attachAll() {
+
+		var selects = document.getElementsByTagName('select');
+
+		for (var loop = 0; loop < selects.length; loop++) {
+			if (selects[loop].getAttribute('data-lookup') !== null) {
+				attach(selects[loop]);
+			}
+		}
+	}
+
+	if (window.addEventListener) {
+		window.addEventListener('load', attachAll, false);
+	} else {
+		window.attachEvent('onload', attachAll);
+	}
+})();
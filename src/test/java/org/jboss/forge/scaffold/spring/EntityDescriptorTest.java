@@ -0,0 +1,55 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.forge.scaffold.spring;
+
+import junit.framework.TestCase;
+
+public class EntityDescriptorTest
+    extends TestCase
+{
+    //
+    // Public methods
+    //
+
+    public void testNames()
+    {
+        EntityDescriptor descriptor = EntityDescriptor.forName("com.test.model.CustomerOrder");
+
+        assertEquals("CustomerOrder", descriptor.getName());
+        assertEquals("customerOrder", descriptor.getCcName());
+        assertEquals("Customer Order", descriptor.getLabel());
+        assertEquals("CustomerOrders", descriptor.getPlural());
+        assertEquals("Customer Orders", descriptor.getPluralLabel());
+        assertEquals("customerorders", descriptor.getControllerPath());
+        assertEquals("CustomerOrderController", descriptor.getControllerName());
+        assertEquals("CustomerOrderDao", descriptor.getDaoName());
+        assertEquals("CustomerOrderDaoImpl", descriptor.getDaoImplementationName());
+        assertEquals(descriptor.getCamelCaseName() + "Dao", descriptor.getDaoFieldName());
+
+        // Memoized, regardless of package
+
+        assertTrue(descriptor == EntityDescriptor.forName("CustomerOrder"));
+        assertEquals("categories", EntityDescriptor.pluralOf("category"));
+        assertTrue(EntityDescriptor.pluralOf("category") == EntityDescriptor.pluralOf("category"));
+    }
+}
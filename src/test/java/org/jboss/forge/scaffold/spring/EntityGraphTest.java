@@ -0,0 +1,97 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.forge.scaffold.spring;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.jboss.forge.parser.JavaParser;
+import org.jboss.forge.parser.java.JavaClass;
+import org.jboss.forge.scaffold.spring.EntityGraph.EntityNode;
+import org.jboss.forge.scaffold.spring.EntityGraph.Relationship;
+import org.jboss.forge.scaffold.spring.EntityGraph.RelationshipKind;
+
+public class EntityGraphTest
+    extends TestCase
+{
+    //
+    // Public methods
+    //
+
+    public void testRelationships()
+    {
+        JavaClass customer = JavaParser.parse(JavaClass.class, "package com.test.model;\n"
+                + "import java.util.Set;\n"
+                + "import javax.persistence.Entity;\n"
+                + "import javax.persistence.Id;\n"
+                + "import javax.persistence.ManyToMany;\n"
+                + "import javax.persistence.ManyToOne;\n"
+                + "import javax.persistence.OneToMany;\n"
+                + "import com.test.other.Address;\n"
+                + "@Entity public class Customer {\n"
+                + "   @Id private Long id;\n"
+                + "   @OneToMany(mappedBy = \"customer\") private Set<Order> orders = new java.util.HashSet<Order>();\n"
+                + "   @ManyToMany private Set<Address> addresses;\n"
+                + "   @ManyToOne private Customer referrer;\n"
+                + "   private String name;\n"
+                + "}");
+
+        EntityGraph graph = new EntityGraph();
+        graph.update(Arrays.asList(customer));
+
+        EntityNode node = graph.getNode("com.test.model.Customer");
+        assertEquals(Arrays.asList("id"), node.getPrimaryKeys());
+
+        List<Relationship> relationships = node.getRelationships();
+        assertEquals(3, relationships.size());
+
+        assertEquals("orders", relationships.get(0).getName());
+        assertEquals(RelationshipKind.ONE_TO_MANY, relationships.get(0).getKind());
+        assertEquals("Order", relationships.get(0).getTargetType());
+        assertEquals("com.test.model", relationships.get(0).getTargetPackage());
+        assertEquals("customer", relationships.get(0).getMappedBy());
+        assertFalse(relationships.get(0).isOwningSide());
+
+        // No initializer, and imported from another package
+
+        assertEquals("Address", relationships.get(1).getTargetType());
+        assertEquals("com.test.other", relationships.get(1).getTargetPackage());
+        assertTrue(relationships.get(1).isOwningSide());
+
+        assertEquals(RelationshipKind.MANY_TO_ONE, relationships.get(2).getKind());
+        assertEquals("Customer", relationships.get(2).getTargetType());
+
+        Map<String, String> converters = graph.getConverters(Arrays.asList(customer));
+        assertEquals(2, converters.size());
+        assertEquals("com.test.model.Order", converters.get("Order"));
+        assertEquals("com.test.other.Address", converters.get("Address"));
+
+        // Analysed once per parse
+
+        assertTrue(node == graph.getNode(customer));
+        assertTrue(node != graph.getNode(JavaParser.parse(JavaClass.class, customer.toString())));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.forge.scaffold.spring;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class ModelPopulationPlanTest
+    extends TestCase
+{
+    //
+    // Public methods
+    //
+
+    public void testReferences()
+    {
+        assertTrue(ModelPopulationPlan.references("<form:options items=\"${customer}\"/>", "customer"));
+        assertTrue(ModelPopulationPlan.references("<c:out value=\"${ customer.name }\"/>", "customer"));
+
+        assertFalse(ModelPopulationPlan.references("<c:out value=\"${order.customer}\"/>", "customer"));
+        assertFalse(ModelPopulationPlan.references("<c:out value=\"${customers}\"/>", "customer"));
+        assertFalse(ModelPopulationPlan.references("customer", "customer"));
+        assertFalse(ModelPopulationPlan.references(null, "customer"));
+    }
+
+    public void testPlan()
+    {
+        ModelPopulationPlan plan = new ModelPopulationPlan(Arrays.asList("customer", "products"));
+
+        plan.record(ModelPopulationPlan.EDIT, "<form:select path=\"customer\"><form:options items=\"${customer}\"/></form:select>"
+                    + "<form:select path=\"products\" items=\"${products}\" multiple=\"multiple\"/>");
+        plan.record(ModelPopulationPlan.VIEW, "<a href=\"<c:url value=\"/customers/${order.customer.id}\"/>\">");
+
+        assertEquals(Arrays.asList(true, true), plan.getUses(ModelPopulationPlan.EDIT));
+        assertEquals(Arrays.asList(false, false), plan.getUses(ModelPopulationPlan.VIEW));
+        assertTrue(plan.isUsed(ModelPopulationPlan.EDIT, "products"));
+        assertFalse(plan.isUsed(ModelPopulationPlan.VIEW, "products"));
+        assertFalse(plan.isUsed(ModelPopulationPlan.EDIT, "unknown"));
+
+        // Unrecorded views are assumed to need everything
+
+        assertEquals(Arrays.asList(true, true), plan.getUses(ModelPopulationPlan.CREATE));
+
+        Map<Object, Object> context = plan.addTo(new HashMap<Object, Object>());
+        assertEquals(Arrays.asList(false, false), context.get("viewUses"));
+        assertEquals(Arrays.asList(true, true), context.get("searchUses"));
+    }
+}
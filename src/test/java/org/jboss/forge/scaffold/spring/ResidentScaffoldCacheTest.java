@@ -0,0 +1,82 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.forge.scaffold.spring;
+
+import java.io.File;
+
+import org.jboss.forge.project.Project;
+import org.jboss.forge.project.facets.JavaSourceFacet;
+import org.jboss.forge.scaffold.spring.metawidget.inspector.InspectionResultCache;
+import org.jboss.forge.scaffold.spring.metawidget.inspector.propertystyle.JavaSourceCache;
+import org.jboss.forge.test.AbstractShellTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResidentScaffoldCacheTest extends AbstractShellTest
+{
+    //
+    // Public methods
+    //
+
+    @Test
+    public void testResultsKeptUntilSourcesChange() throws Exception
+    {
+        Project project = initializeJavaProject();
+
+        JavaSourceFacet java = project.getFacet(JavaSourceFacet.class);
+        String type = "com.test.model.Customer";
+        java.getJavaResource(type).setContents("package com.test.model; public class Customer {}");
+
+        JavaSourceCache sources = JavaSourceCache.forProject(project);
+        Assert.assertNotNull(sources.getJavaSource(type));
+
+        InspectionResultCache results = new InspectionResultCache();
+        ResidentScaffoldCache cache = ResidentScaffoldCache.forProject(project);
+        Assert.assertTrue(cache == ResidentScaffoldCache.forProject(project));
+
+        cache.validate(results, "generator");
+        results.put("<inspection-result/>", type);
+        cache.save(results, sources, "generator");
+
+        File snapshot = new File((File) project.getProjectRoot().getUnderlyingResourceObject(), ".forge/"
+                + ResidentScaffoldCache.CACHE_FILE);
+        Assert.assertTrue(snapshot.exists());
+
+        // Unchanged sources keep their results
+
+        cache.validate(results, "generator");
+        Assert.assertEquals("<inspection-result/>", results.get(type));
+
+        // Changed sources discard them
+
+        File source = java.getJavaResource(type).getUnderlyingResourceObject();
+        Assert.assertTrue(source.setLastModified(source.lastModified() + 2000));
+        cache.validate(results, "generator");
+        Assert.assertNull(results.get(type));
+
+        // Clearing removes the snapshot too
+
+        cache.clear(results);
+        Assert.assertFalse(snapshot.exists());
+    }
+}
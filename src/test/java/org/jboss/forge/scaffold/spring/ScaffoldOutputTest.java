@@ -0,0 +1,136 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.jboss.forge.scaffold.spring;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.jboss.forge.project.Project;
+import org.jboss.forge.resources.DirectoryResource;
+import org.jboss.forge.resources.FileResource;
+import org.jboss.forge.shell.util.Streams;
+import org.jboss.forge.test.AbstractShellTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ScaffoldOutputTest extends AbstractShellTest
+{
+    //
+    // Public methods
+    //
+
+    @Test
+    public void testSkipUnchanged() throws Exception
+    {
+        Project project = initializeJavaProject();
+        FileResource<?> resource = (FileResource<?>) project.getProjectRoot().getChild("output.txt");
+        File file = (File) resource.getUnderlyingResourceObject();
+
+        ScaffoldOutput output = new ScaffoldOutput(getShell());
+        output.createOrOverwrite(resource, "Foo", true);
+        Assert.assertEquals(1, output.getWritten());
+        Assert.assertEquals(0, output.getSkipped());
+
+        // Identical contents leave the file untouched
+
+        Assert.assertTrue(file.setLastModified(1000000000L));
+        output.createOrOverwrite(resource, "Foo", false);
+        output.createOrOverwrite(resource, new ByteArrayInputStream("Foo".getBytes()), false);
+        Assert.assertEquals(1, output.getWritten());
+        Assert.assertEquals(2, output.getSkipped());
+        Assert.assertEquals(1000000000L, file.lastModified());
+
+        // Same size, different contents
+
+        output.createOrOverwrite(resource, "Bar", true);
+        Assert.assertEquals(2, output.getWritten());
+        Assert.assertEquals("Bar", Streams.toString(resource.getResourceInputStream()));
+
+        output.reset();
+        Assert.assertEquals(0, output.getWritten());
+        Assert.assertEquals(0, output.getSkipped());
+    }
+
+    @Test
+    public void testQueuedWrites() throws Exception
+    {
+        Project project = initializeJavaProject();
+        DirectoryResource root = project.getProjectRoot();
+
+        ScaffoldOutput output = new ScaffoldOutput(getShell());
+        output.start(2);
+
+        for (int loop = 0; loop < 10; loop++)
+        {
+            output.createOrOverwrite((FileResource<?>) root.getChild("queued/output" + loop + ".txt"), "Foo" + loop, true);
+        }
+
+        // Compared against the queued contents, not the (possibly unwritten) file
+
+        output.createOrOverwrite((FileResource<?>) root.getChild("queued/output0.txt"), "Foo0", true);
+        output.finish();
+
+        Assert.assertEquals(10, output.getWritten());
+        Assert.assertEquals(1, output.getSkipped());
+
+        for (int loop = 0; loop < 10; loop++)
+        {
+            FileResource<?> resource = (FileResource<?>) root.getChild("queued/output" + loop + ".txt");
+            Assert.assertEquals("Foo" + loop, Streams.toString(resource.getResourceInputStream()));
+        }
+
+        // No temporary files left behind
+
+        Assert.assertEquals(10, ((File) root.getChild("queued").getUnderlyingResourceObject()).list().length);
+    }
+
+    @Test
+    public void testQueuedWriteFailure() throws Exception
+    {
+        Project project = initializeJavaProject();
+        DirectoryResource root = project.getProjectRoot();
+
+        ScaffoldOutput output = new ScaffoldOutput(getShell());
+        output.createOrOverwrite((FileResource<?>) root.getChild("notADirectory"), "Foo", true);
+
+        output.start(1);
+        output.createOrOverwrite((FileResource<?>) root.getChild("notADirectory/output.txt"), "Foo", true);
+
+        try
+        {
+            output.finish();
+            Assert.fail();
+        }
+        catch (RuntimeException e)
+        {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+
+        // Back to writing synchronously
+
+        output.createOrOverwrite((FileResource<?>) root.getChild("output.txt"), "Bar", true);
+        Assert.assertEquals("Bar", Streams.toString(((FileResource<?>) root.getChild("output.txt")).getResourceInputStream()));
+    }
+}
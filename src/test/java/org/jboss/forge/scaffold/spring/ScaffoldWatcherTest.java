@@ -0,0 +1,252 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.forge.scaffold.spring;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jboss.forge.parser.java.JavaClass;
+import org.jboss.forge.project.Project;
+import org.jboss.forge.project.facets.JavaSourceFacet;
+import org.jboss.forge.resources.Resource;
+import org.jboss.forge.scaffold.spring.metawidget.inspector.propertystyle.JavaSourceCache;
+import org.jboss.forge.test.AbstractShellTest;
+import org.junit.Assert;
+import org.junit.Test;
+import org.metawidget.util.CollectionUtils;
+
+public class ScaffoldWatcherTest extends AbstractShellTest
+{
+    //
+    // Public methods
+    //
+
+    @Test
+    public void testRegeneratesChangedAndRelatedEntities() throws Exception
+    {
+        Project project = initializeJavaProject();
+        JavaSourceFacet java = project.getFacet(JavaSourceFacet.class);
+
+        java.getJavaResource("com.test.model.Customer").setContents("package com.test.model; import javax.persistence.Entity; "
+                + "@Entity public class Customer { private String name; }");
+        java.getJavaResource("com.test.model.Order").setContents("package com.test.model; import javax.persistence.Entity; "
+                + "import javax.persistence.ManyToOne; @Entity public class Order { @ManyToOne private Customer customer; }");
+        java.getJavaResource("com.test.model.Product").setContents("package com.test.model; import javax.persistence.Entity; "
+                + "@Entity public class Product { private String name; }");
+
+        RecordingScaffold scaffold = new RecordingScaffold();
+        ScaffoldWatcher watcher = new ScaffoldWatcher(scaffold, project, "", 10, 0, null);
+
+        Assert.assertTrue(watcher.poll().contains("com.test.model.Customer"));
+        Assert.assertTrue(watcher.poll().isEmpty());
+
+        // Changing Customer regenerates Customer, and Order (which relates to it), but not Product
+
+        java.getJavaResource("com.test.model.Customer").setContents("package com.test.model; import javax.persistence.Entity; "
+                + "@Entity public class Customer { private String name; private String email; }");
+
+        Set<String> changed = watcher.poll();
+        Assert.assertEquals(Collections.singleton("com.test.model.Customer"), changed);
+
+        watcher.regenerate(changed);
+
+        Set<String> generated = CollectionUtils.newHashSet();
+
+        for (JavaClass entity : scaffold.entities)
+        {
+            generated.add(entity.getQualifiedName());
+        }
+
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("com.test.model.Customer", "com.test.model.Order")), generated);
+        Assert.assertTrue(scaffold.entities.get(0).hasField("email"));
+    }
+
+    @Test
+    public void testWaitsForOverlappingRun() throws Exception
+    {
+        Project project = initializeJavaProject();
+        JavaSourceFacet java = project.getFacet(JavaSourceFacet.class);
+
+        java.getJavaResource("com.test.model.Customer").setContents("package com.test.model; import javax.persistence.Entity; "
+                + "@Entity public class Customer { private String name; }");
+
+        RecordingScaffold scaffold = new RecordingScaffold();
+        final ScaffoldWatcher watcher = new ScaffoldWatcher(scaffold, project, "", 10, 0, null);
+        watcher.poll();
+
+        // While another run (such as a foreground scaffold from-entity) holds the project's run lock, the watcher waits
+
+        ReentrantLock runLock = SpringScaffold.getRunLock(project);
+        runLock.lock();
+
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                watcher.regenerate(Collections.singleton("com.test.model.Customer"));
+            }
+        };
+
+        try
+        {
+            thread.start();
+            thread.join(500);
+
+            Assert.assertTrue(thread.isAlive());
+            Assert.assertTrue(scaffold.entities.isEmpty());
+        }
+        finally
+        {
+            runLock.unlock();
+        }
+
+        // ...then regenerates once the other run has finished
+
+        thread.join();
+        Assert.assertEquals(1, scaffold.entities.size());
+        Assert.assertFalse(runLock.isLocked());
+    }
+
+    @Test
+    public void testStopsDuringRun() throws Exception
+    {
+        Project project = initializeJavaProject();
+        JavaSourceFacet java = project.getFacet(JavaSourceFacet.class);
+
+        java.getJavaResource("com.test.model.Customer").setContents("package com.test.model; import javax.persistence.Entity; "
+                + "@Entity public class Customer { private String name; }");
+
+        final BlockingScaffold scaffold = new BlockingScaffold(project);
+        ScaffoldWatcher watcher = new ScaffoldWatcher(scaffold, project, "", 10, 0, null);
+        ScaffoldWatcher.start(watcher);
+
+        java.getJavaResource("com.test.model.Customer").setContents("package com.test.model; import javax.persistence.Entity; "
+                + "@Entity public class Customer { private String name; private String email; }");
+
+        Assert.assertTrue(scaffold.entered.await(10, TimeUnit.SECONDS));
+
+        // Stop while the run is in progress: the run still needs the project's monitor before it can finish
+
+        final boolean[] stopped = new boolean[1];
+
+        Thread stopper = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                stopped[0] = ScaffoldWatcher.stop(scaffold.watched);
+            }
+        };
+
+        stopper.start();
+        stopper.join(10000);
+
+        Assert.assertFalse(stopper.isAlive());
+        Assert.assertTrue(stopped[0]);
+        Assert.assertTrue(scaffold.finished);
+        Assert.assertFalse(watcher.isRunning());
+        Assert.assertFalse(SpringScaffold.getRunLock(project).isLocked());
+    }
+
+    //
+    // Inner classes
+    //
+
+    static class RecordingScaffold
+        extends SpringScaffold
+    {
+        List<JavaClass> entities = CollectionUtils.newArrayList();
+
+        RecordingScaffold()
+        {
+            super(null, null, null, null);
+        }
+
+        @Override
+        public List<Resource<?>> generateFromEntities(String targetDir, Resource<?> template, Collection<JavaClass> entities,
+                    boolean overwrite)
+        {
+            this.entities.addAll(entities);
+            return CollectionUtils.newArrayList();
+        }
+    }
+
+    static class BlockingScaffold
+        extends SpringScaffold
+    {
+        final Project watched;
+
+        final CountDownLatch entered = new CountDownLatch(1);
+
+        volatile boolean finished;
+
+        BlockingScaffold(Project watched)
+        {
+            super(null, null, null, null);
+            this.watched = watched;
+        }
+
+        @Override
+        public void setProject(Project project)
+        {
+            // No configuration to read
+        }
+
+        @Override
+        public void warm()
+        {
+            // No templates to load
+        }
+
+        @Override
+        public List<Resource<?>> generateFromEntities(String targetDir, Resource<?> template, Collection<JavaClass> entities,
+                    boolean overwrite)
+        {
+            this.entered.countDown();
+
+            // Give the stop a head start, then touch the project's shared caches as a real run does
+
+            try
+            {
+                Thread.sleep(500);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            JavaSourceCache.forProject(this.watched);
+            this.finished = true;
+
+            return CollectionUtils.newArrayList();
+        }
+    }
+}
@@ -22,7 +22,11 @@
 
 package org.jboss.forge.scaffold.spring;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.forge.parser.java.JavaClass;
 import org.jboss.forge.parser.xml.Node;
 import org.jboss.forge.parser.xml.XMLParser;
 import org.jboss.forge.project.Project;
@@ -96,6 +100,11 @@ public class SpringScaffoldTest extends AbstractSpringScaffoldTest
         Assert.assertTrue(contents.contains("<div id=\"content\">"));
         Assert.assertTrue(contents.contains("<div id=\"content\">"));
         Assert.assertTrue(contents.contains("<div id=\"footer\">"));
+
+        // Typeahead lookups are off by default
+
+        Assert.assertFalse(contents.contains("typeahead.js"));
+        Assert.assertFalse(web.getWebResource("/resources/typeahead.js").exists());
     }
 
     @Test
@@ -534,6 +543,331 @@ public class SpringScaffoldTest extends AbstractSpringScaffoldTest
         Assert.assertTrue(java.getJavaResource(meta.getTopLevelPackage() + ".mvc.root.IndexController").exists());
     }
 
+    @Test
+    public void testGenerateFromEntities() throws Exception
+    {
+        Project project = setupScaffoldProject();
+
+        queueInputLines("");
+        getShell().execute("entity --named Customer");
+        getShell().execute("field string --named firstName");
+        queueInputLines("");
+        getShell().execute("entity --named Supplier");
+        getShell().execute("field string --named name");
+
+        MetadataFacet meta = project.getFacet(MetadataFacet.class);
+        JavaSourceFacet java = project.getFacet(JavaSourceFacet.class);
+        WebResourceFacet web = project.getFacet(WebResourceFacet.class);
+
+        List<JavaClass> entities = new ArrayList<JavaClass>();
+        entities.add((JavaClass) java.getJavaResource(meta.getTopLevelPackage() + ".model.Customer").getJavaSource());
+        entities.add((JavaClass) java.getJavaResource(meta.getTopLevelPackage() + ".model.Supplier").getJavaSource());
+
+        project.getFacet(SpringScaffold.class).generateFromEntities("", null, entities, true);
+
+        Assert.assertTrue(web.getWebResource("WEB-INF/views/Customer/createCustomer.jsp").exists());
+        Assert.assertTrue(web.getWebResource("WEB-INF/views/Supplier/createSupplier.jsp").exists());
+        Assert.assertTrue(java.getJavaResource(meta.getTopLevelPackage() + ".mvc.root.CustomerController").exists());
+        Assert.assertTrue(java.getJavaResource(meta.getTopLevelPackage() + ".mvc.root.SupplierController").exists());
+        Assert.assertTrue(java.getJavaResource(meta.getTopLevelPackage() + ".mvc.root.IndexController").exists());
+
+        // Both entities' definitions must end up in the single views.xml
+
+        Node definitions = XMLParser.parse(web.getWebResource("WEB-INF/views/views.xml").getResourceInputStream());
+        List<String> names = new ArrayList<String>();
+
+        for (Node definition : definitions.get("definition"))
+        {
+            names.add(definition.getAttribute("name"));
+        }
+
+        Assert.assertTrue(names.contains("createCustomer"));
+        Assert.assertTrue(names.contains("viewSupplier"));
+        Assert.assertTrue(names.contains("customers"));
+        Assert.assertTrue(names.contains("suppliers"));
+
+        String navigation = Streams.toString(web.getWebResource("WEB-INF/layouts/pageTemplate.jsp").getResourceInputStream());
+        Assert.assertTrue(navigation.contains("/customers/"));
+        Assert.assertTrue(navigation.contains("/suppliers/"));
+    }
+
+    @Test
+    public void testGenerateFromEntityOneToManyConverter() throws Exception
+    {
+        Project project = setupScaffoldProject();
+
+        MetadataFacet meta = project.getFacet(MetadataFacet.class);
+        JavaSourceFacet java = project.getFacet(JavaSourceFacet.class);
+
+        queueInputLines("");
+        getShell().execute("entity --named Item");
+        getShell().execute("field string --named name");
+
+        queueInputLines("");
+        getShell().execute("entity --named Customer");
+        getShell().execute("field oneToMany --named items --fieldType " + meta.getTopLevelPackage() + ".model.Item");
+
+        queueInputLines("", "", "", "");
+        getShell().execute("scaffold from-entity");
+
+        // The converter for the N-to-many relationship imports the related entity itself, not its package
+
+        String converter = Streams.toString(java.getJavaResource(meta.getTopLevelPackage() + ".converters.ItemConverter")
+                .getResourceInputStream());
+        Assert.assertTrue(converter.contains("import " + meta.getTopLevelPackage() + ".model.Item;"));
+        Assert.assertFalse(converter.contains("import " + meta.getTopLevelPackage() + ".model;"));
+        Assert.assertTrue(converter.contains("public class ItemConverter implements GenericConverter"));
+    }
+
+    @Test
+    public void testGenerateFromEntitiesIncremental() throws Exception
+    {
+        Project project = setupScaffoldProject();
+
+        queueInputLines("");
+        getShell().execute("entity --named Customer");
+        getShell().execute("field string --named firstName");
+
+        MetadataFacet meta = project.getFacet(MetadataFacet.class);
+        JavaSourceFacet java = project.getFacet(JavaSourceFacet.class);
+        WebResourceFacet web = project.getFacet(WebResourceFacet.class);
+        SpringScaffold scaffold = project.getFacet(SpringScaffold.class);
+
+        String customer = meta.getTopLevelPackage() + ".model.Customer";
+        List<JavaClass> entities = new ArrayList<JavaClass>();
+        entities.add((JavaClass) java.getJavaResource(customer).getJavaSource());
+
+        // Incremental scaffolding is opt-in: by default, an unchanged entity is still regenerated
+
+        FileResource<?> create = web.getWebResource("WEB-INF/views/Customer/createCustomer.jsp");
+        scaffold.generateFromEntities("", null, entities, true);
+        create.setContents("edited");
+        scaffold.generateFromEntities("", null, entities, true);
+        Assert.assertFalse("edited".equals(Streams.toString(create.getResourceInputStream())));
+
+        scaffold.setIncremental(true);
+
+        try
+        {
+            scaffold.generateFromEntities("", null, entities, true);
+
+            Assert.assertTrue(project.getProjectRoot().getChildDirectory(ScaffoldManifest.MANIFEST_DIRECTORY)
+                    .getChild(ScaffoldManifest.MANIFEST_FILE).exists());
+
+            // An unchanged entity is skipped, leaving its views untouched
+
+            create.setContents("edited");
+            scaffold.generateFromEntities("", null, entities, true);
+            Assert.assertEquals("edited", Streams.toString(create.getResourceInputStream()));
+
+            // A changed entity is regenerated
+
+            getShell().execute("field string --named lastName");
+            entities.clear();
+            entities.add((JavaClass) java.getJavaResource(customer).getJavaSource());
+            scaffold.generateFromEntities("", null, entities, true);
+            Assert.assertTrue(Streams.toString(create.getResourceInputStream()).contains("lastName"));
+        }
+        finally
+        {
+            scaffold.setIncremental(null);
+        }
+    }
+
+    @Test
+    public void testGenerateFromEntityKeysetPagination() throws Exception
+    {
+        Project project = setupScaffoldProject();
+
+        queueInputLines("");
+        getShell().execute("entity --named Customer");
+        getShell().execute("field string --named firstName");
+
+        getShell().execute("spring pagination --keyset true");
+
+        try
+        {
+            queueInputLines("", "", "", "");
+            getShell().execute("scaffold from-entity");
+
+            MetadataFacet meta = project.getFacet(MetadataFacet.class);
+            JavaSourceFacet java = project.getFacet(JavaSourceFacet.class);
+            WebResourceFacet web = project.getFacet(WebResourceFacet.class);
+
+            String dao = Streams.toString(java.getJavaResource(meta.getTopLevelPackage() + ".repo.CustomerDaoImpl")
+                    .getResourceInputStream());
+            Assert.assertTrue(dao.contains("public List<Customer> searchAfter(Customer search, Long afterKey, Integer maxItems)"));
+            Assert.assertTrue(dao.contains("builder.gt(keyPath, key)"));
+            Assert.assertTrue(dao.contains("root.<Long>get(\"id\")"));
+
+            String controller = Streams.toString(java.getJavaResource(meta.getTopLevelPackage()
+                    + ".mvc.root.CustomerController").getResourceInputStream());
+            Assert.assertTrue(controller.contains("customerDao.searchAfter(search, after, max + 1)"));
+            Assert.assertFalse(controller.contains("@RequestParam(required=false) Long first"));
+
+            String search = Streams.toString(web.getWebResource("WEB-INF/views/Customer/customers.jsp")
+                    .getResourceInputStream());
+            Assert.assertTrue(search.contains("/customers?after=${lastKey}&max=${max}"));
+            Assert.assertFalse(search.contains("first="));
+        }
+        finally
+        {
+            getShell().execute("spring pagination --keyset false");
+        }
+    }
+
+    @Test
+    public void testGenerateFromEntitiesCountStrategy() throws Exception
+    {
+        Project project = setupScaffoldProject();
+
+        queueInputLines("");
+        getShell().execute("entity --named Customer");
+        getShell().execute("field string --named firstName");
+        getShell().execute("entity --named Supplier");
+        getShell().execute("field string --named name");
+
+        MetadataFacet meta = project.getFacet(MetadataFacet.class);
+        JavaSourceFacet java = project.getFacet(JavaSourceFacet.class);
+        WebResourceFacet web = project.getFacet(WebResourceFacet.class);
+        SpringScaffold scaffold = project.getFacet(SpringScaffold.class);
+
+        String customer = meta.getTopLevelPackage() + ".model.Customer";
+        String supplier = meta.getTopLevelPackage() + ".model.Supplier";
+
+        getShell().execute("spring count-strategy --strategy cached --entity " + customer + " --ttl 30");
+
+        try
+        {
+            List<JavaClass> entities = new ArrayList<JavaClass>();
+            entities.add((JavaClass) java.getJavaResource(customer).getJavaSource());
+            entities.add((JavaClass) java.getJavaResource(supplier).getJavaSource());
+            scaffold.generateFromEntities("", null, entities, true);
+
+            // Only the configured entity caches its count
+
+            String customerDao = Streams.toString(java.getJavaResource(meta.getTopLevelPackage()
+                    + ".repo.CustomerDaoImpl").getResourceInputStream());
+            Assert.assertTrue(customerDao.contains("private static final long UNFILTERED_COUNT_TTL = 30000L;"));
+            Assert.assertTrue(customerDao.contains("if (predicates.length == 0)"));
+
+            String supplierDao = Streams.toString(java.getJavaResource(meta.getTopLevelPackage()
+                    + ".repo.SupplierDaoImpl").getResourceInputStream());
+            Assert.assertFalse(supplierDao.contains("unfilteredCount"));
+
+            // Changing the strategy rescaffolds the entity, even though its source is unchanged
+
+            getShell().execute("spring count-strategy --strategy NONE --entity " + customer);
+            scaffold.generateFromEntities("", null, entities, true);
+
+            String controller = Streams.toString(java.getJavaResource(meta.getTopLevelPackage()
+                    + ".mvc.root.CustomerController").getResourceInputStream());
+            Assert.assertFalse(controller.contains("getCount(search)"));
+            Assert.assertTrue(controller.contains("customerDao.search(search, first, max + 1)"));
+
+            String search = Streams.toString(web.getWebResource("WEB-INF/views/Customer/customers.jsp")
+                    .getResourceInputStream());
+            Assert.assertTrue(search.contains("<c:if test=\"${next}\">"));
+            Assert.assertFalse(search.contains("(of ${count})"));
+
+            search = Streams.toString(web.getWebResource("WEB-INF/views/Supplier/suppliers.jsp")
+                    .getResourceInputStream());
+            Assert.assertTrue(search.contains("<c:if test=\"${count > current*max}\">"));
+        }
+        finally
+        {
+            getShell().execute("spring count-strategy --strategy EXACT --entity " + customer + " --ttl 60");
+        }
+    }
+
+    @Test
+    public void testGenerateFromEntityTypeahead() throws Exception
+    {
+        Project project = setupScaffoldProject();
+
+        queueInputLines("");
+        getShell().execute("entity --named Customer");
+        getShell().execute("field string --named firstName");
+
+        getShell().execute("spring typeahead");
+
+        try
+        {
+            queueInputLines("", "", "", "");
+            getShell().execute("scaffold from-entity");
+
+            MetadataFacet meta = project.getFacet(MetadataFacet.class);
+            JavaSourceFacet java = project.getFacet(JavaSourceFacet.class);
+
+            String dao = Streams.toString(java.getJavaResource(meta.getTopLevelPackage() + ".repo.CustomerDaoImpl")
+                    .getResourceInputStream());
+            Assert.assertTrue(dao.contains("public List<Object[]> lookup(String query, Integer firstResult, Integer maxItems)"));
+            Assert.assertTrue(dao.contains("Expression<String> label = root.<String>get(\"firstName\");"));
+            Assert.assertTrue(dao.contains(".setFirstResult(firstResult).setMaxResults(maxItems)"));
+
+            String controller = Streams.toString(java.getJavaResource(meta.getTopLevelPackage()
+                    + ".mvc.root.CustomerController").getResourceInputStream());
+            Assert.assertTrue(controller.contains("@RequestMapping(value=\"/lookup\", method=RequestMethod.GET)"));
+            Assert.assertTrue(controller.contains("customerDao.lookup(q, first, max)"));
+
+            WebResourceFacet web = project.getFacet(WebResourceFacet.class);
+            String page = Streams.toString(web.getWebResource("WEB-INF/layouts/pageTemplate.jsp").getResourceInputStream());
+            Assert.assertTrue(page.contains("/static/resources/typeahead.js"));
+            Assert.assertTrue(web.getWebResource("/resources/typeahead.js").exists());
+        }
+        finally
+        {
+            getShell().execute("spring typeahead --enable false");
+        }
+    }
+
+    @Test
+    public void testGenerateFromEntitySecondLevelCache() throws Exception
+    {
+        Project project = setupScaffoldProject();
+
+        queueInputLines("");
+        getShell().execute("entity --named Customer");
+        getShell().execute("field string --named firstName");
+
+        MetadataFacet meta = project.getFacet(MetadataFacet.class);
+        String customer = meta.getTopLevelPackage() + ".model.Customer";
+
+        getShell().execute("spring cache --entity " + customer + " --maxEntries 500 --expiration 60");
+
+        try
+        {
+            ResourceFacet resources = project.getFacet(ResourceFacet.class);
+            String persistence = Streams.toString(resources.getResource("META-INF/persistence.xml").getResourceInputStream());
+            Assert.assertTrue(persistence.contains("hibernate.ejb.classcache." + customer));
+            Assert.assertTrue(persistence.contains("hibernate.cache.infinispan." + customer + ".eviction.max_entries"));
+            Assert.assertTrue(persistence.contains("\"60000\""));
+
+            queueInputLines("", "", "", "");
+            getShell().execute("scaffold from-entity");
+
+            JavaSourceFacet java = project.getFacet(JavaSourceFacet.class);
+
+            String dao = Streams.toString(java.getJavaResource(meta.getTopLevelPackage() + ".repo.CustomerDaoImpl")
+                    .getResourceInputStream());
+            Assert.assertTrue(dao.contains("query.setHint(\"org.hibernate.cacheable\", true);"));
+
+            Assert.assertTrue(java.getJavaResource(meta.getTopLevelPackage() + ".repo.CacheStatistics").exists());
+
+            String controller = Streams.toString(java.getJavaResource(meta.getTopLevelPackage()
+                    + ".mvc.root.IndexController").getResourceInputStream());
+            Assert.assertTrue(controller.contains("return cacheStatistics.report();"));
+        }
+        finally
+        {
+            getShell().execute("spring cache --entity " + customer + " --enable false");
+        }
+
+        ResourceFacet resources = project.getFacet(ResourceFacet.class);
+        String persistence = Streams.toString(resources.getResource("META-INF/persistence.xml").getResourceInputStream());
+        Assert.assertFalse(persistence.contains("hibernate.ejb.classcache." + customer));
+    }
+
     @Test
     public void testGenerateFromEntityCamelCase() throws Exception
     {
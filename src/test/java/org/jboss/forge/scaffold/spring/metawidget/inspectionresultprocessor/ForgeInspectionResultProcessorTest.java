@@ -0,0 +1,134 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.forge.scaffold.spring.metawidget.inspectionresultprocessor;
+
+import static org.jboss.forge.scaffold.spring.metawidget.inspector.ForgeInspectionResultConstants.*;
+import static org.metawidget.inspector.InspectionResultConstants.*;
+
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.metawidget.util.XmlUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+public class ForgeInspectionResultProcessorTest
+         extends TestCase
+{
+   //
+   // Public methods
+   //
+
+   public void testEntityPrimaryKey()
+   {
+      String inspectionResult = newInspectionResult(120);
+      String processed = new ForgeInspectionResultProcessor().processInspectionResult(inspectionResult, null, null, "com.test.Foo");
+
+      Element entity = XmlUtils.getFirstChildElement(XmlUtils.documentFromString(processed).getDocumentElement());
+      assertEquals(ENTITY, entity.getNodeName());
+      assertEquals("id", entity.getAttribute(PRIMARY_KEY));
+
+      NodeList properties = entity.getElementsByTagName(PROPERTY);
+      assertEquals(120, properties.getLength());
+
+      for (int loop = 0; loop < properties.getLength(); loop++)
+      {
+         Element property = (Element) properties.item(loop);
+         assertEquals("property" + loop, property.getAttribute(NAME));
+         assertEquals("true", property.getAttribute(REQUIRED));
+         assertEquals("id", property.getAttribute(ENTITY_PRIMARY_KEY));
+      }
+
+      // Same result as the old, DOM-based implementation
+
+      assertEquals(XmlUtils.documentToString(XmlUtils.documentFromString(processWithDom(inspectionResult)), false),
+               XmlUtils.documentToString(XmlUtils.documentFromString(processed), false));
+   }
+
+   public void testNoPrimaryKey()
+   {
+      String inspectionResult = "<inspection-result xmlns=\"http://metawidget.org/inspection-result\" version=\"1.0\"><entity type=\"com.test.Foo\"><property name=\"bar\"/></entity></inspection-result>";
+
+      assertTrue(inspectionResult == new ForgeInspectionResultProcessor().processInspectionResult(inspectionResult, null, null, "com.test.Foo"));
+   }
+
+   //
+   // Private methods
+   //
+
+   /**
+    * Builds an inspection result for an entity, with a primary key, and the given number of properties.
+    */
+
+   private static String newInspectionResult(int properties)
+   {
+      StringBuilder builder = new StringBuilder();
+      builder.append("<inspection-result xmlns=\"http://metawidget.org/inspection-result\" version=\"1.0\">");
+      builder.append("<entity type=\"com.test.Foo\" " + PRIMARY_KEY + "=\"id\">");
+
+      for (int loop = 0; loop < properties; loop++)
+      {
+         builder.append("<property name=\"property" + loop + "\" type=\"java.lang.String\" required=\"true\"/>");
+      }
+
+      builder.append("</entity></inspection-result>");
+
+      return builder.toString();
+   }
+
+   /**
+    * The DOM-based implementation that <tt>ForgeInspectionResultProcessor</tt> used to have, as a reference to compare
+    * its results with.
+    */
+
+   private static String processWithDom(String inspectionResult)
+   {
+      Document document = XmlUtils.documentFromString(inspectionResult);
+      NodeList entities = document.getElementsByTagName(ENTITY);
+
+      for (int i = 0; i < entities.getLength(); i++)
+      {
+         Node entity = entities.item(i);
+         Map<String, String> attributes = XmlUtils.getAttributesAsMap(entity);
+         String primaryKey = attributes.get(PRIMARY_KEY);
+
+         if (null != primaryKey)
+         {
+            NodeList properties = document.getElementsByTagName(PROPERTY);
+
+            for (int j = 0; j < properties.getLength(); j++)
+            {
+               Element property = (Element) properties.item(j);
+               Map<String, String> propAttribs = XmlUtils.getAttributesAsMap(property);
+               propAttribs.put(ENTITY_PRIMARY_KEY, primaryKey);
+
+               XmlUtils.setMapAsAttributes(property, propAttribs);
+            }
+         }
+      }
+
+      return XmlUtils.documentToString(document, false);
+   }
+}
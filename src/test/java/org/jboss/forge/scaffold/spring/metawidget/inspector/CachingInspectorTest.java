@@ -0,0 +1,88 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.forge.scaffold.spring.metawidget.inspector;
+
+import junit.framework.TestCase;
+
+import org.metawidget.inspector.iface.Inspector;
+
+public class CachingInspectorTest
+         extends TestCase
+{
+   //
+   // Public methods
+   //
+
+   public void testSharedCache()
+   {
+      CountingInspector counting = new CountingInspector();
+      InspectionResultCache cache = new InspectionResultCache();
+
+      CachingInspector inspector1 = new CachingInspector(new CachingInspectorConfig().setInspector(counting).setCache(cache));
+      CachingInspector inspector2 = new CachingInspector(new CachingInspectorConfig().setInspector(counting).setCache(cache));
+
+      assertEquals("<inspection-result>Foo</inspection-result>", inspector1.inspect(null, "Foo"));
+      assertEquals("<inspection-result>Foo</inspection-result>", inspector2.inspect(null, "Foo"));
+      assertEquals(1, counting.count);
+
+      // Names are part of the key
+
+      assertEquals("<inspection-result>Foo/bar</inspection-result>", inspector2.inspect(null, "Foo", "bar"));
+      assertEquals(2, counting.count);
+
+      // Objects are never cached
+
+      inspector1.inspect(new Object(), "Foo");
+      assertEquals(3, counting.count);
+
+      // Clearing the cache forces a re-inspection
+
+      cache.clear();
+      inspector1.inspect(null, "Foo");
+      assertEquals(4, counting.count);
+   }
+
+   //
+   // Inner classes
+   //
+
+   static class CountingInspector
+            implements Inspector
+   {
+      int count;
+
+      @Override
+      public String inspect(Object toInspect, String type, String... names)
+      {
+         this.count++;
+
+         StringBuilder builder = new StringBuilder(type);
+
+         for (String name : names)
+         {
+            builder.append('/').append(name);
+         }
+
+         return "<inspection-result>" + builder + "</inspection-result>";
+      }
+   }
+}
@@ -0,0 +1,134 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat, Inc., and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.forge.scaffold.spring.metawidget.inspector;
+
+import junit.framework.TestCase;
+
+import org.metawidget.inspector.iface.Inspector;
+import org.metawidget.util.XmlUtils;
+import org.w3c.dom.Element;
+
+public class ParallelCompositeInspectorTest
+         extends TestCase
+{
+   //
+   // Public methods
+   //
+
+   public void testMergeInConfiguredOrder()
+   {
+      // The slowest Inspector comes first, but its result must still be the master
+
+      Inspector slow = new FixedInspector("<property name=\"bar\" first=\"true\" shared=\"slow\"/>", 200);
+      Inspector fast = new FixedInspector("<property name=\"baz\"/><property name=\"bar\" second=\"true\" shared=\"fast\"/>", 0);
+      Inspector empty = new FixedInspector(null, 0);
+
+      ParallelCompositeInspector inspector = new ParallelCompositeInspector(
+               (ParallelCompositeInspectorConfig) new ParallelCompositeInspectorConfig().setInspectors(slow, empty, fast));
+
+      Element entity = XmlUtils.getFirstChildElement(inspector.inspectAsDom(null, "Foo"));
+      assertEquals("Foo", entity.getAttribute("type"));
+
+      Element bar = XmlUtils.getChildWithAttributeValue(entity, "name", "bar");
+      assertEquals("true", bar.getAttribute("first"));
+      assertEquals("true", bar.getAttribute("second"));
+      assertEquals("fast", bar.getAttribute("shared"));
+
+      assertTrue(XmlUtils.getChildWithAttributeValue(entity, "name", "baz") != null);
+      assertEquals(2, entity.getChildNodes().getLength());
+   }
+
+   public void testNoResults()
+   {
+      Inspector empty = new FixedInspector(null, 0);
+
+      ParallelCompositeInspector inspector = new ParallelCompositeInspector(
+               (ParallelCompositeInspectorConfig) new ParallelCompositeInspectorConfig().setInspectors(empty, empty));
+
+      assertEquals(null, inspector.inspect(null, "Foo"));
+   }
+
+   public void testFailure()
+   {
+      Inspector fine = new FixedInspector("<property name=\"bar\"/>", 0);
+      Inspector failing = new Inspector()
+      {
+         @Override
+         public String inspect(Object toInspect, String type, String... names)
+         {
+            throw new IllegalStateException("Failed inspecting " + type);
+         }
+      };
+
+      ParallelCompositeInspector inspector = new ParallelCompositeInspector(
+               (ParallelCompositeInspectorConfig) new ParallelCompositeInspectorConfig().setInspectors(fine, failing));
+
+      try
+      {
+         inspector.inspect(null, "Foo");
+         fail();
+      }
+      catch (IllegalStateException e)
+      {
+         assertEquals("Failed inspecting Foo", e.getMessage());
+      }
+   }
+
+   //
+   // Inner classes
+   //
+
+   static class FixedInspector
+            implements Inspector
+   {
+      private final String properties;
+
+      private final long delay;
+
+      FixedInspector(String properties, long delay)
+      {
+         this.properties = properties;
+         this.delay = delay;
+      }
+
+      @Override
+      public String inspect(Object toInspect, String type, String... names)
+      {
+         try
+         {
+            Thread.sleep(this.delay);
+         }
+         catch (InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+         }
+
+         if (this.properties == null)
+         {
+            return null;
+         }
+
+         return "<inspection-result xmlns=\"http://metawidget.org/inspection-result\"><entity type=\"" + type + "\">"
+                  + this.properties + "</entity></inspection-result>";
+      }
+   }
+}
@@ -31,6 +31,8 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.Map;
 
+import org.jboss.forge.parser.java.JavaClass;
+import org.jboss.forge.parser.java.JavaSource;
 import org.jboss.forge.project.Project;
 import org.jboss.forge.project.facets.JavaSourceFacet;
 import org.jboss.forge.scaffold.spring.metawidget.inspector.propertystyle.MockAnnotationComplex.anEnum;
@@ -106,6 +108,41 @@ public class ForgePropertyStyleTest
       assertEquals("Foo", mockAnnotationSimple.aString());
 
       testMockAnnotationComplex(property);
+
+      // Proxies and their parsed values are cached, but arrays are never shared
+
+      assertTrue(property.getAnnotation(MockAnnotationSimple.class) == property.getAnnotation(MockAnnotationSimple.class));
+      MockAnnotationComplex mockAnnotationComplex = property.getAnnotation(MockAnnotationComplex.class);
+      assertTrue(mockAnnotationComplex.aByteArray() != mockAnnotationComplex.aByteArray());
+   }
+
+   @Test
+   public void testJavaSourceCache()
+            throws Exception
+   {
+      Project project = initializeJavaProject();
+
+      JavaSourceFacet java = project.getFacet(JavaSourceFacet.class);
+      String type = "org.jboss.forge.scaffold.spring.metawidget.inspector.propertystyle.MockCachedClass";
+
+      // Negative caching
+
+      assertNull(ForgePropertyStyle.sourceForName(project, String.class.getName()));
+      assertNull(ForgePropertyStyle.sourceForName(project, type));
+
+      // Sources are parsed once...
+
+      java.getJavaResource(type).setContents("package org.jboss.forge.scaffold.spring.metawidget.inspector.propertystyle; public class MockCachedClass {}");
+      JavaSource<?> source = ForgePropertyStyle.sourceForName(project, type);
+      assertNotNull(source);
+      assertTrue(source == ForgePropertyStyle.sourceForName(project, type));
+
+      // ...until they change
+
+      java.getJavaResource(type).setContents("package org.jboss.forge.scaffold.spring.metawidget.inspector.propertystyle; public class MockCachedClass { private String name; }");
+      JavaSource<?> changedSource = ForgePropertyStyle.sourceForName(project, type);
+      assertTrue(source != changedSource);
+      assertTrue(((JavaClass) changedSource).hasField("name"));
    }
 
    //
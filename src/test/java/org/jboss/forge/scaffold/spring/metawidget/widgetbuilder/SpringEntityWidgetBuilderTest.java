@@ -30,6 +30,7 @@ import java.util.Set;
 
 import javax.persistence.OneToOne;
 
+import org.jboss.forge.scaffold.spring.SpringScaffold;
 import org.junit.Test;
 import org.metawidget.inspector.annotation.UiComesAfter;
 import org.metawidget.inspector.annotation.UiRequired;
@@ -110,6 +111,49 @@ public class SpringEntityWidgetBuilderTest
         Assert.assertEquals(result, widget.toString());
     }
 
+    public void testTypeaheadLookups()
+            throws Exception
+    {
+        EntityWidgetBuilderConfig typeaheadConfig = new EntityWidgetBuilderConfig().setConfig(new MockForgeConfiguration()
+        {
+            @Override
+            public boolean getBoolean(String key, boolean defaultValue)
+            {
+                return SpringScaffold.TYPEAHEAD_LOOKUPS.equals(key);
+            }
+        });
+
+        StaticSpringMetawidget metawidget = new StaticSpringMetawidget();
+        metawidget.setValue("foo");
+        SpringEntityWidgetBuilder widgetBuilder = new SpringEntityWidgetBuilder(typeaheadConfig);
+
+        // Single relationships list their current choice, and look up others
+
+        Map<String, String> attributes = CollectionUtils.newHashMap();
+        attributes.put(NAME, "bar");
+        attributes.put(TYPE, Bar.class.getName());
+        attributes.put(ONE_TO_ONE, TRUE);
+        attributes.put(REQUIRED, TRUE);
+        StaticWidget widget = widgetBuilder.buildWidget(PROPERTY, attributes, metawidget);
+
+        String result = "<form:select data-lookup=\"${pageContext.request.contextPath}/springentitywidgetbuildertest$bars/lookup\">"
+                    + "<form:options itemValue=\"id\" items=\"${bar}\"/></form:select>";
+        Assert.assertEquals(result, widget.toString());
+
+        // N-to-many relationships list their current choices, rather than every entity
+
+        attributes = CollectionUtils.newHashMap();
+        attributes.put(NAME, "bars");
+        attributes.put(TYPE, Set.class.getName());
+        attributes.put(PARAMETERIZED_TYPE, Bar.class.getName());
+        attributes.put(N_TO_MANY, TRUE);
+        widget = widgetBuilder.buildWidget(PROPERTY, attributes, metawidget);
+
+        result = "<form:select data-lookup=\"${pageContext.request.contextPath}/springentitywidgetbuildertest$bars/lookup\" "
+                    + "itemValue=\"id\" items=\"${bars}\" multiple=\"multiple\"/>";
+        Assert.assertEquals(result, widget.toString());
+    }
+
     //
     // Inner class
     //
@@ -22,6 +22,8 @@
 
 package org.jboss.forge.spec.spring.mvc;
 
+import java.util.List;
+
 import junit.framework.Assert;
 
 import org.jboss.forge.parser.xml.Node;
@@ -30,6 +32,8 @@ import org.jboss.forge.project.Project;
 import org.jboss.forge.project.facets.MetadataFacet;
 import org.jboss.forge.project.facets.ResourceFacet;
 import org.jboss.forge.project.facets.WebResourceFacet;
+import org.jboss.forge.resources.FileResource;
+import org.jboss.forge.shell.util.Streams;
 import org.jboss.forge.spec.javaee.ServletFacet;
 import org.jboss.forge.test.AbstractShellTest;
 import org.jboss.shrinkwrap.descriptor.api.spec.servlet.web.WebAppDescriptor;
@@ -154,6 +158,57 @@ public class SpringPluginTest extends AbstractShellTest
         Assert.assertTrue(viewResolver);
     }
 
+    @Test
+    public void testHasServlet() throws Exception
+    {
+        Project project = initializeJavaProject();
+        queueInputLines("HIBERNATE", "JBOSS_AS7", "", "");
+        getShell().execute("persistence setup");
+        queueInputLines("", "");
+        getShell().execute("spring setup");
+
+        ServletFacet servlet = project.getFacet(ServletFacet.class);
+        SpringFacet spring = project.getFacet(SpringFacet.class);
+        String original = Streams.toString(servlet.getConfigFile().getResourceInputStream());
+
+        Assert.assertFalse(spring.hasServlet("/admin/*"));
+
+        spring.addServlet("/WEB-INF/admin-mvc-context.xml", "admin");
+        Assert.assertTrue(spring.hasServlet("/admin/*"));
+
+        // Changes made to web.xml outside of the facet are seen too
+
+        servlet.getConfigFile().setContents(original);
+        Assert.assertFalse(spring.hasServlet("/admin/*"));
+    }
+
+    @Test
+    public void testGetResourceForWebPath() throws Exception
+    {
+        Project project = initializeJavaProject();
+        queueInputLines("HIBERNATE", "JBOSS_AS7", "", "");
+        getShell().execute("persistence setup");
+        queueInputLines("", "");
+        getShell().execute("spring setup");
+
+        getShell().execute("spring mvc --targetDir /admin");
+
+        SpringFacet spring = project.getFacet(SpringFacet.class);
+        WebResourceFacet web = project.getFacet(WebResourceFacet.class);
+
+        FileResource<?> view = web.getWebResource("views/customer.jsp");
+        view.setContents("customer");
+
+        Assert.assertNull(spring.getResourceForWebPath(null));
+        Assert.assertNull(spring.getResourceForWebPath("/views/missing.jsp"));
+
+        // getWebPaths lists one view ID per Spring mapping, whether or not the path resolves
+
+        List<String> webPaths = spring.getWebPaths(view);
+        Assert.assertEquals(spring.getSpringServletMappings().size(), webPaths.size());
+        Assert.assertEquals(webPaths, spring.getWebPaths("/views/customer.jsp"));
+    }
+
     @Test
     public void testGenerateApplicationContext() throws Exception
     {
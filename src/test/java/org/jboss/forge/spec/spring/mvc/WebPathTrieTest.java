@@ -0,0 +1,66 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat, Inc. and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.forge.spec.spring.mvc;
+
+import java.io.File;
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.jboss.forge.spec.spring.mvc.impl.WebPathTrie;
+import org.junit.Test;
+
+public class WebPathTrieTest
+{
+    @Test
+    public void testResolve() throws Exception
+    {
+        File webRoot = File.createTempFile("webroot", "");
+        Assert.assertTrue(webRoot.delete());
+        Assert.assertTrue(new File(webRoot, "admin/customer").mkdirs());
+        Assert.assertTrue(new File(webRoot, "admin/customer/search.jsp").createNewFile());
+        Assert.assertTrue(new File(webRoot, "index.jsp").createNewFile());
+
+        WebPathTrie trie = new WebPathTrie(webRoot);
+
+        Assert.assertEquals(new File(webRoot, "index.jsp"), trie.resolve(Arrays.asList("index")));
+        Assert.assertEquals(new File(webRoot, "index.jsp"), trie.resolve(Arrays.asList("index.jsp")));
+        Assert.assertEquals(new File(webRoot, "admin/customer/search.jsp"), trie.resolve(Arrays.asList("admin", "customer", "search")));
+        Assert.assertNull(trie.resolve(Arrays.asList("admin", "customer", "view")));
+        Assert.assertNull(trie.resolve(Arrays.asList("admin", "product", "search")));
+        Assert.assertNull(trie.resolve(Arrays.<String> asList()));
+
+        // Entries added and removed after the directories were listed
+
+        Assert.assertTrue(new File(webRoot, "admin/customer/view.jsp").createNewFile());
+        Assert.assertTrue(new File(webRoot, "admin/product").mkdirs());
+        Assert.assertTrue(new File(webRoot, "admin/product/search.jsp").createNewFile());
+
+        Assert.assertEquals(new File(webRoot, "admin/customer/view.jsp"), trie.resolve(Arrays.asList("admin", "customer", "view")));
+        Assert.assertEquals(new File(webRoot, "admin/product/search.jsp"), trie.resolve(Arrays.asList("admin", "product", "search")));
+
+        Assert.assertTrue(new File(webRoot, "index.jsp").delete());
+        Assert.assertTrue(webRoot.setLastModified(webRoot.lastModified() + 1000));
+        Assert.assertNull(trie.resolve(Arrays.asList("index")));
+    }
+}